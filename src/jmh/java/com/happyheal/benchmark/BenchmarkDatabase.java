@@ -0,0 +1,101 @@
+package com.happyheal.benchmark;
+
+import com.happyheal.database.DataImporter;
+import com.happyheal.database.DatabaseManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Temporary SQLite database and data file used by a single benchmark trial.
+ * Each JMH fork runs in its own JVM, so pointing the static DatabaseManager
+ * at a temp file does not interfere with other benchmarks.
+ */
+public final class BenchmarkDatabase implements AutoCloseable {
+
+    private final Path directory;
+    private final Path dataFile;
+
+    private BenchmarkDatabase(Path directory) {
+        this.directory = directory;
+        this.dataFile = directory.resolve("data.json");
+    }
+
+    /**
+     * Creates an empty database with the application schema and a generated data file.
+     */
+    public static BenchmarkDatabase create(int instanceCount, String httpEndpoint) throws IOException {
+        BenchmarkDatabase database = new BenchmarkDatabase(Files.createTempDirectory("happyheal-bench"));
+        BenchmarkDataset.write(database.dataFile, instanceCount, httpEndpoint);
+        DatabaseManager.setDatabasePath(database.directory.resolve("happyheal.db"));
+        DatabaseManager.initializeDatabase();
+        return database;
+    }
+
+    /**
+     * Creates a database and imports the generated data file into it.
+     */
+    public static BenchmarkDatabase createAndImport(int instanceCount, String httpEndpoint) throws IOException {
+        BenchmarkDatabase database = create(instanceCount, httpEndpoint);
+        database.importData();
+        return database;
+    }
+
+    public void importData() {
+        DataImporter.importInitialData(dataFile);
+    }
+
+    public Path getDataFile() {
+        return dataFile;
+    }
+
+    /**
+     * Returns the id of the first transition of the given type.
+     */
+    public long transitionId(String type) throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT id FROM workflow_transitions WHERE type = ? ORDER BY id LIMIT 1")) {
+            pstmt.setString(1, type);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    throw new IllegalStateException("No transition of type " + type);
+                }
+                return rs.getLong(1);
+            }
+        }
+    }
+
+    /**
+     * Returns the ids of all product instances in insertion order.
+     */
+    public long[] instanceIds() throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT id FROM product_instances ORDER BY id");
+             ResultSet rs = pstmt.executeQuery()) {
+            long[] ids = new long[16];
+            int count = 0;
+            while (rs.next()) {
+                if (count == ids.length) {
+                    ids = java.util.Arrays.copyOf(ids, count * 2);
+                }
+                ids[count++] = rs.getLong(1);
+            }
+            return java.util.Arrays.copyOf(ids, count);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        DatabaseManager.shutdown();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.happyheal.benchmark;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Writes synthetic data.json files of a given size for the benchmarks.
+ * The layout mirrors the shipped data.json: a two-level product group tree,
+ * one workflow with a noaction and an http transition, and a few users.
+ */
+public final class BenchmarkDataset {
+
+    public static final String WORKFLOW_ID = "B0000000-0000-0000-0000-000000000001";
+    public static final String STATE_STOCKED = "B0000000-0000-0000-0000-0000000000A1";
+    public static final String STATE_DELIVERED = "B0000000-0000-0000-0000-0000000000A2";
+
+    public static final String HTTP_BODY = "{\r\n"
+            + "    \"state\": \"stocked -> delivered\",\r\n"
+            + "    \"cust_name\": \"{{customername}}\",\r\n"
+            + "    \"cust_email\": \"{{customermail}}\",\r\n"
+            + "    \"product_number\": \"{{productnumber}}\",\r\n"
+            + "    \"serial_number\": \"{{sn}}\",\r\n"
+            + "    \"purchased_at\": \"{{purchasedate}}\"\r\n"
+            + "}";
+
+    private static final int ROOT_GROUPS = 4;
+    private static final int SUB_GROUPS = 5;
+    private static final int PRODUCTS_PER_GROUP = 10;
+
+    private BenchmarkDataset() {}
+
+    /**
+     * Returns the serial number of the n-th generated instance.
+     */
+    public static String serialNumber(int index) {
+        return String.format("%04d-%02d\\87**-\"fin\"-%d", index % 10_000, index % 97, index);
+    }
+
+    /**
+     * Writes a data file with the given number of product instances.
+     *
+     * @param file The file to write
+     * @param instanceCount The total number of product instances
+     * @param httpEndpoint The endpoint used by the http transition
+     */
+    public static void write(Path file, int instanceCount, String httpEndpoint) throws IOException {
+        int leafGroups = ROOT_GROUPS * SUB_GROUPS;
+        int products = leafGroups * PRODUCTS_PER_GROUP;
+        int instance = 0;
+
+        try (JsonGenerator gen = new JsonFactory().createGenerator(file.toFile(), JsonEncoding.UTF8)) {
+            gen.writeStartObject();
+
+            gen.writeArrayFieldStart("ProductGroupTree");
+            for (int root = 0; root < ROOT_GROUPS; root++) {
+                gen.writeStartObject();
+                gen.writeStringField("Id", groupId(root, -1));
+                gen.writeStringField("Name", "Benchmark Group " + root);
+                gen.writeStringField("Workflow", WORKFLOW_ID);
+                gen.writeArrayFieldStart("SubGroups");
+                for (int sub = 0; sub < SUB_GROUPS; sub++) {
+                    gen.writeStartObject();
+                    gen.writeStringField("Id", groupId(root, sub));
+                    gen.writeStringField("Name", "Benchmark Group " + root + "." + sub);
+                    gen.writeStringField("Workflow", WORKFLOW_ID);
+                    gen.writeArrayFieldStart("Products");
+                    for (int p = 0; p < PRODUCTS_PER_GROUP; p++) {
+                        int productIndex = (root * SUB_GROUPS + sub) * PRODUCTS_PER_GROUP + p;
+                        // Spread the instances evenly, the remainder goes to the first products
+                        int count = instanceCount / products + (productIndex < instanceCount % products ? 1 : 0);
+
+                        gen.writeStartObject();
+                        gen.writeStringField("Id", String.format("B1000000-0000-0000-0000-%012d", productIndex));
+                        gen.writeStringField("Name", "Benchmark Product " + productIndex);
+                        gen.writeStringField("ProductNumber", String.format("99-%03d-%02d", productIndex / 100, productIndex % 100));
+                        gen.writeArrayFieldStart("Instances");
+                        for (int i = 0; i < count; i++, instance++) {
+                            gen.writeStartObject();
+                            gen.writeStringField("SerialNumber", serialNumber(instance));
+                            gen.writeStringField("CustomerMail", "customer" + (instance % 5_000) + "@example.com");
+                            gen.writeEndObject();
+                        }
+                        gen.writeEndArray();
+                        gen.writeEndObject();
+                    }
+                    gen.writeEndArray();
+                    gen.writeEndObject();
+                }
+                gen.writeEndArray();
+                gen.writeEndObject();
+            }
+            gen.writeEndArray();
+
+            gen.writeArrayFieldStart("Workflows");
+            gen.writeStartObject();
+            gen.writeStringField("Id", WORKFLOW_ID);
+            gen.writeStringField("Name", "Benchmark Stocking");
+            gen.writeArrayFieldStart("States");
+            writeState(gen, STATE_STOCKED, "stocked", "#00FF00");
+            writeState(gen, STATE_DELIVERED, "delivered", "#0000FF");
+            gen.writeEndArray();
+            gen.writeArrayFieldStart("Transitions");
+            gen.writeStartObject();
+            gen.writeStringField("Type", "noaction");
+            gen.writeStringField("From", STATE_STOCKED);
+            gen.writeStringField("To", STATE_DELIVERED);
+            gen.writeEndObject();
+            gen.writeStartObject();
+            gen.writeStringField("Type", "http");
+            gen.writeStringField("From", STATE_STOCKED);
+            gen.writeStringField("To", STATE_DELIVERED);
+            gen.writeObjectFieldStart("Setup");
+            gen.writeStringField("Endpoint", httpEndpoint);
+            gen.writeStringField("Body", HTTP_BODY);
+            gen.writeEndObject();
+            gen.writeEndObject();
+            gen.writeEndArray();
+            gen.writeEndObject();
+            gen.writeEndArray();
+
+            gen.writeArrayFieldStart("Users");
+            gen.writeStartObject();
+            gen.writeStringField("Username", "bench");
+            gen.writeStringField("Password", "bench");
+            gen.writeStringField("DisplayName", "Benchmark User");
+            gen.writeEndObject();
+            gen.writeEndArray();
+
+            gen.writeEndObject();
+        }
+    }
+
+    private static String groupId(int root, int sub) {
+        return String.format("B2000000-0000-0000-%04d-%012d", root, sub + 1);
+    }
+
+    private static void writeState(JsonGenerator gen, String id, String title, String color) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("Id", id);
+        gen.writeStringField("Title", title);
+        gen.writeStringField("Color", color);
+        gen.writeEndObject();
+    }
+}
@@ -0,0 +1,44 @@
+package com.happyheal.benchmark;
+
+import com.happyheal.database.DatabaseManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures DataImporter.importInitialData for generated data files of different sizes.
+ * Every invocation starts from an empty database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ImportBenchmark {
+
+    @Param({"1000", "10000"})
+    public int instances;
+
+    private BenchmarkDatabase database;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        database = BenchmarkDatabase.create(instances, "http://127.0.0.1:9/v1/Workflow");
+    }
+
+    @Setup(Level.Invocation)
+    public void clearDatabase() {
+        DatabaseManager.clearDatabase();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        database.close();
+    }
+
+    @Benchmark
+    public void importInitialData() {
+        database.importData();
+    }
+}
@@ -0,0 +1,103 @@
+package com.happyheal.benchmark;
+
+import com.happyheal.database.DatabaseManager;
+import com.happyheal.workflow.SerialIndex;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the product instance lookup the executor and a scan would perform,
+ * by id and by serial number including connection acquisition, and through the
+ * in-memory {@link SerialIndex}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InstanceLookupBenchmark {
+
+    // Same query WorkflowExecutor uses to load the template context of an instance
+    private static final String LOOKUP_BY_ID = """
+        SELECT pi.serial_number, pi.customer_mail, pi.customer_name, pi.purchase_date,
+               p.name as product_name, p.product_number, w.workflow_id
+        FROM product_instances pi
+        JOIN products p ON pi.product_id = p.id
+        LEFT JOIN product_group_workflows w ON w.group_id = p.group_id
+        WHERE pi.id = ?
+    """;
+
+    private static final String LOOKUP_BY_SERIAL = """
+        SELECT pi.id, pi.current_state_id, p.name as product_name, p.product_number
+        FROM product_instances pi
+        JOIN products p ON pi.product_id = p.id
+        WHERE pi.serial_number = ?
+    """;
+
+    @Param({"1000", "100000"})
+    public int instances;
+
+    private BenchmarkDatabase database;
+    private long[] instanceIds;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        database = BenchmarkDatabase.createAndImport(instances, "http://127.0.0.1:9/v1/Workflow");
+        instanceIds = database.instanceIds();
+        SerialIndex.current();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        database.close();
+    }
+
+    @Benchmark
+    public void lookupById(Blackhole blackhole) throws Exception {
+        long instanceId = instanceIds[ThreadLocalRandom.current().nextInt(instanceIds.length)];
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(LOOKUP_BY_ID)) {
+            pstmt.setLong(1, instanceId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    blackhole.consume(rs.getString("serial_number"));
+                    blackhole.consume(rs.getString("product_name"));
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void lookupBySerial(Blackhole blackhole) throws Exception {
+        String serial = BenchmarkDataset.serialNumber(ThreadLocalRandom.current().nextInt(instances));
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(LOOKUP_BY_SERIAL)) {
+            pstmt.setString(1, serial);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    blackhole.consume(rs.getLong("id"));
+                    blackhole.consume(rs.getString("current_state_id"));
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void scanBySerial(Blackhole blackhole) throws Exception {
+        String serial = BenchmarkDataset.serialNumber(ThreadLocalRandom.current().nextInt(instances));
+        blackhole.consume(SerialIndex.current().find(serial));
+    }
+
+    @Benchmark
+    public void scanByPrefix(Blackhole blackhole) throws Exception {
+        String serial = BenchmarkDataset.serialNumber(ThreadLocalRandom.current().nextInt(instances));
+        blackhole.consume(SerialIndex.current().findByPrefix(serial.substring(0, serial.length() - 1), 20));
+    }
+}
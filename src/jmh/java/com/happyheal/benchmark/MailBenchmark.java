@@ -0,0 +1,72 @@
+package com.happyheal.benchmark;
+
+import com.happyheal.workflow.ActionSpec;
+import com.happyheal.workflow.MustacheTemplateEngine;
+import com.happyheal.workflow.action.ActionContext;
+import com.happyheal.workflow.action.TransitionAction;
+import com.happyheal.workflow.action.TransitionActions;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures mail transitions delivered to a local stub SMTP server with a simulated
+ * round trip per reply. {@code messagesPerConnection=1} opens a connection per mail,
+ * as sending without a pool would; the larger value reuses pooled transports.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MailBenchmark {
+
+    @Param({"1", "100"})
+    public int messagesPerConnection;
+
+    @Param({"1"})
+    public long replyDelayMillis;
+
+    private static final int BATCH_SIZE = 100;
+
+    private StubSmtpServer smtpServer;
+    private TransitionAction mail;
+    private List<ActionContext> batch;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        smtpServer = StubSmtpServer.start(replyDelayMillis);
+        // Read when the mail action sends its first message, once per forked JVM
+        System.setProperty("happyheal.mail.smtp.host", smtpServer.host());
+        System.setProperty("happyheal.mail.smtp.port", String.valueOf(smtpServer.port()));
+        System.setProperty("happyheal.mail.maxMessagesPerConnection", String.valueOf(messagesPerConnection));
+
+        mail = TransitionActions.get("mail");
+        ActionSpec spec = mail.parse(Map.of(
+                "From", "service@happyheal.com",
+                "To", "{{customermail}}",
+                "Subject", "Product {{type}}, {{sn}} has been delivered",
+                "Body", "Dear {{customername}}, your {{type}} ({{sn}}) is on its way."));
+        batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(new ActionContext(i, spec, MustacheTemplateEngine.createProductInstanceContext(
+                    "Winnie Pooh Toothbrush", BenchmarkDataset.serialNumber(i), "customer" + i + "@example.com",
+                    "Sam Ridder", "11-056-01", "2024-01-01")));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        smtpServer.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<Boolean> sendBatch() throws Exception {
+        return mail.executeBatch(batch);
+    }
+}
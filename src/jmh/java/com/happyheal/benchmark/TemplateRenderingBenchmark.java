@@ -0,0 +1,43 @@
+package com.happyheal.benchmark;
+
+import com.happyheal.workflow.MustacheTemplateEngine;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures MustacheTemplateEngine.processTemplate for the templates used by the shipped workflows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TemplateRenderingBenchmark {
+
+    @Param({"httpBody", "mailSubject", "filePath"})
+    public String template;
+
+    private String source;
+    private Map<String, Object> context;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        switch (template) {
+            case "httpBody" -> source = BenchmarkDataset.HTTP_BODY;
+            case "mailSubject" -> source = "Product {{type}}, {{sn}} has been returned";
+            case "filePath" -> source = "c:\\productdata\\{{productnumber}}-{{sn}}.txt";
+            default -> throw new IllegalArgumentException(template);
+        }
+        context = MustacheTemplateEngine.createProductInstanceContext(
+                "Winnie Pooh Toothbrush", BenchmarkDataset.serialNumber(42), "saridder@comcast.net",
+                "Sam Ridder", "11-056-01", "2024-01-01");
+    }
+
+    @Benchmark
+    public String render() {
+        return MustacheTemplateEngine.processTemplate(source, context);
+    }
+}
@@ -0,0 +1,67 @@
+package com.happyheal.benchmark;
+
+import com.happyheal.workflow.TransitionResult;
+import com.happyheal.workflow.WorkflowExecutor;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures WorkflowExecutor.executeTransition for a noaction and an http transition
+ * against a temp-file database. The http transition posts to a local stub server.
+ * The batch benchmark reports time per instance, so both scores are comparable.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransitionBenchmark {
+
+    @Param({"1000", "100000"})
+    public int instances;
+
+    @Param({"noaction", "http"})
+    public String action;
+
+    private StubHttpServer httpServer;
+    private BenchmarkDatabase database;
+    private long transitionId;
+    private long[] instanceIds;
+
+    private static final int BATCH_SIZE = 100;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        httpServer = StubHttpServer.start();
+        database = BenchmarkDatabase.createAndImport(instances, httpServer.endpoint());
+        transitionId = database.transitionId(action);
+        instanceIds = database.instanceIds();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        database.close();
+        httpServer.close();
+    }
+
+    @Benchmark
+    public boolean executeTransition() {
+        long instanceId = instanceIds[ThreadLocalRandom.current().nextInt(instanceIds.length)];
+        return WorkflowExecutor.executeTransition(instanceId, transitionId);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<TransitionResult> executeTransitionsBatch() {
+        List<Long> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(instanceIds[ThreadLocalRandom.current().nextInt(instanceIds.length)]);
+        }
+        return WorkflowExecutor.executeTransitions(batch, transitionId);
+    }
+}
@@ -0,0 +1,64 @@
+package com.happyheal.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.happyheal.model.AppData;
+import com.happyheal.model.ProductInstance;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.StreamSupport;
+
+/**
+ * Measures walking all product instances of the in-memory product group tree: flattened
+ * into a list, with the visitor, and as a parallel stream over the tree's spliterator.
+ * Run with the GC profiler to compare the allocations per walk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TreeTraversalBenchmark {
+
+    @Param({"10000", "100000"})
+    public int instances;
+
+    private AppData appData;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        Path file = Files.createTempFile("happyheal-bench", ".json");
+        try {
+            BenchmarkDataset.write(file, instances, "http://127.0.0.1:9/v1/Workflow");
+            appData = new ObjectMapper().readValue(file.toFile(), AppData.class);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Benchmark
+    public long flattened() {
+        long customers = 0;
+        for (ProductInstance instance : appData.getAllProductInstances()) {
+            customers += instance.getCustomerMail() != null ? 1 : 0;
+        }
+        return customers;
+    }
+
+    @Benchmark
+    public long visitor() {
+        long[] customers = new long[1];
+        appData.forEachInstance(instance -> customers[0] += instance.getCustomerMail() != null ? 1 : 0);
+        return customers[0];
+    }
+
+    @Benchmark
+    public long parallelStream() {
+        return StreamSupport.stream(appData.instanceSpliterator(), true)
+            .filter(instance -> instance.getCustomerMail() != null)
+            .count();
+    }
+}
@@ -2,7 +2,11 @@ package com.happyheal;
 
 import com.happyheal.database.DatabaseManager;
 import com.happyheal.database.DataImporter;
+import com.happyheal.metrics.FlightRecording;
+import com.happyheal.metrics.MetricsRegistry;
+import com.happyheal.metrics.MetricsServer;
 import com.happyheal.ui.MainApplication;
+import com.happyheal.workflow.TransitionOutbox;
 import javafx.application.Application;
 
 /**
@@ -13,12 +17,20 @@ public class Main {
     
     public static void main(String[] args) {
         try {
+            // Publish metrics over JMX and, if configured, on a local HTTP endpoint and in a flight recording
+            MetricsRegistry.registerMBean();
+            MetricsServer.start();
+            FlightRecording.start();
+            
             // Initialize database and create tables if they don't exist
             DatabaseManager.initializeDatabase();
             
             // Import initial data from JSON file
             DataImporter.importInitialData();
             
+            // Deliver side effects left in the outbox by the last run
+            TransitionOutbox.start();
+            
             // Launch JavaFX application
             Application.launch(MainApplication.class, args);
             
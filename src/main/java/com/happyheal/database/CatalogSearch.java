@@ -0,0 +1,211 @@
+package com.happyheal.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Full-text search over products and product instances, backed by the FTS5 tables
+ * {@code product_search} and {@code instance_search}.
+ *
+ * <p>Every whitespace-separated word of the input must match the start of a word in a
+ * searched column, so partial input already finds results. Words are quoted before they
+ * reach FTS5, so serial numbers with quotes, backslashes or operators are searched
+ * literally. Results are ranked by bm25; empty input lists the first rows instead.</p>
+ */
+public final class CatalogSearch {
+
+    /**
+     * A product found by a search.
+     */
+    public record ProductHit(String id, String name, String productNumber, String groupName) {}
+
+    /**
+     * A product instance found by a search.
+     *
+     * @param stateTitle Title of the current workflow state, or null if the instance has none
+     */
+    public record InstanceHit(long id, String serialNumber, String productName, String customerMail,
+                              String customerName, String stateTitle) {}
+
+    private interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    // Column weights: the unindexed id, then name, then product number, which is the more specific match
+    private static final String SEARCH_PRODUCTS = """
+        SELECT p.id, p.name, p.product_number, g.name AS group_name
+        FROM product_search s
+        JOIN products p ON p.id = s.product_id
+        LEFT JOIN product_groups g ON g.id = p.group_id
+        WHERE product_search MATCH ?
+        ORDER BY bm25(product_search, 0.0, 5.0, 10.0)
+        LIMIT ?
+    """;
+
+    private static final String LIST_PRODUCTS = """
+        SELECT p.id, p.name, p.product_number, g.name AS group_name
+        FROM products p
+        LEFT JOIN product_groups g ON g.id = p.group_id
+        ORDER BY p.name
+        LIMIT ?
+    """;
+
+    // A serial number match ranks above a customer match
+    private static final String SEARCH_INSTANCES = """
+        SELECT pi.id, pi.serial_number, p.name AS product_name, pi.customer_mail, pi.customer_name, ws.title AS state_title
+        FROM instance_search s
+        JOIN product_instances pi ON pi.id = s.rowid
+        JOIN products p ON p.id = pi.product_id
+        LEFT JOIN workflow_states ws ON ws.id = pi.current_state_id
+        WHERE instance_search MATCH ?
+        ORDER BY bm25(instance_search, 10.0, 3.0, 3.0)
+        LIMIT ?
+    """;
+
+    private static final String LIST_INSTANCES = """
+        SELECT pi.id, pi.serial_number, p.name AS product_name, pi.customer_mail, pi.customer_name, ws.title AS state_title
+        FROM product_instances pi
+        JOIN products p ON p.id = pi.product_id
+        LEFT JOIN workflow_states ws ON ws.id = pi.current_state_id
+        ORDER BY pi.id
+        LIMIT ?
+    """;
+
+    private static final RowMapper<ProductHit> PRODUCT_MAPPER = rs -> new ProductHit(
+        rs.getString("id"), rs.getString("name"), rs.getString("product_number"), rs.getString("group_name"));
+
+    private static final RowMapper<InstanceHit> INSTANCE_MAPPER = rs -> new InstanceHit(
+        rs.getLong("id"), rs.getString("serial_number"), rs.getString("product_name"),
+        rs.getString("customer_mail"), rs.getString("customer_name"), rs.getString("state_title"));
+
+    private CatalogSearch() {}
+
+    /**
+     * Creates a search for products by name and product number.
+     */
+    public static Query<ProductHit> products(String text, int limit) {
+        String match = toMatchExpression(text);
+        return match != null
+            ? new Query<>(SEARCH_PRODUCTS, match, limit, PRODUCT_MAPPER)
+            : new Query<>(LIST_PRODUCTS, null, limit, PRODUCT_MAPPER);
+    }
+
+    /**
+     * Creates a search for product instances by serial number, customer mail and customer name.
+     */
+    public static Query<InstanceHit> instances(String text, int limit) {
+        String match = toMatchExpression(text);
+        return match != null
+            ? new Query<>(SEARCH_INSTANCES, match, limit, INSTANCE_MAPPER)
+            : new Query<>(LIST_INSTANCES, null, limit, INSTANCE_MAPPER);
+    }
+
+    public static List<ProductHit> searchProducts(String text, int limit) throws SQLException {
+        return products(text, limit).run();
+    }
+
+    public static List<InstanceHit> searchInstances(String text, int limit) throws SQLException {
+        return instances(text, limit).run();
+    }
+
+    /**
+     * Turns user input into an FTS5 expression of quoted prefix terms, or null if it has no words.
+     */
+    static String toMatchExpression(String text) {
+        if (text == null) {
+            return null;
+        }
+        StringBuilder match = new StringBuilder();
+        for (String word : text.strip().split("\\s+")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            if (match.length() > 0) {
+                match.append(' ');
+            }
+            match.append('"').append(word.replace("\"", "\"\"")).append("\"*");
+        }
+        return match.length() > 0 ? match.toString() : null;
+    }
+
+    /**
+     * A search that runs on the calling thread and can be cancelled from another one,
+     * e.g. when the user typed more before it finished.
+     */
+    public static final class Query<T> {
+        private final String sql;
+        private final String match;
+        private final int limit;
+        private final RowMapper<T> mapper;
+        private PreparedStatement statement;
+        private volatile boolean cancelled;
+
+        private Query(String sql, String match, int limit, RowMapper<T> mapper) {
+            this.sql = sql;
+            this.match = match;
+            this.limit = limit;
+            this.mapper = mapper;
+        }
+
+        /**
+         * Runs the search.
+         *
+         * @throws CancellationException if the search was cancelled
+         */
+        public List<T> run() throws SQLException {
+            List<T> results = new ArrayList<>();
+            try (Connection conn = DatabaseManager.getReadConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                int index = 1;
+                if (match != null) {
+                    pstmt.setString(index++, match);
+                }
+                pstmt.setInt(index, limit);
+                setStatement(pstmt);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        results.add(mapper.map(rs));
+                    }
+                } finally {
+                    // Before the connection goes back to the pool, where a late cancel would hit another query
+                    setStatement(null);
+                }
+            } catch (SQLException e) {
+                if (cancelled) {
+                    throw new CancellationException();
+                }
+                throw e;
+            }
+            if (cancelled) {
+                throw new CancellationException();
+            }
+            return results;
+        }
+
+        /**
+         * Stops the search; a running statement is interrupted inside SQLite.
+         */
+        public synchronized void cancel() {
+            cancelled = true;
+            if (statement != null) {
+                try {
+                    statement.cancel();
+                } catch (SQLException e) {
+                    // The statement finished meanwhile
+                }
+            }
+        }
+
+        private synchronized void setStatement(PreparedStatement pstmt) {
+            if (pstmt != null && cancelled) {
+                throw new CancellationException();
+            }
+            statement = pstmt;
+        }
+    }
+}
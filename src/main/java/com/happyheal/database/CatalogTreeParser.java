@@ -0,0 +1,282 @@
+package com.happyheal.database;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.happyheal.model.User;
+import com.happyheal.model.Workflow;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Token-level reader for data.json used by the streaming importer and the delta sync.
+ * Groups, products and instances are handed to a {@link CatalogWriter} as soon as they
+ * are parsed; only the small Workflows and Users arrays are bound to model objects.
+ */
+class CatalogTreeParser {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * Called around every tree record (group, product or instance) in document order.
+     */
+    interface RecordHook {
+
+        /**
+         * Returns whether the next record should be written.
+         */
+        boolean beforeRecord();
+
+        /**
+         * Called after a record has been queued in the writer.
+         */
+        void afterRecord() throws SQLException, IOException;
+    }
+
+    static final RecordHook WRITE_ALL = new RecordHook() {
+        @Override
+        public boolean beforeRecord() {
+            return true;
+        }
+
+        @Override
+        public void afterRecord() {
+        }
+    };
+
+    /**
+     * Workflows and users of a data file.
+     */
+    record Header(List<Workflow> workflows, List<User> users) {}
+
+    private final JsonParser parser;
+    private final CatalogWriter writer;
+    private final Map<String, String> initialStates;
+    private final RecordHook hook;
+
+    private CatalogTreeParser(JsonParser parser, CatalogWriter writer, Map<String, String> initialStates, RecordHook hook) {
+        this.parser = parser;
+        this.writer = writer;
+        this.initialStates = initialStates;
+        this.hook = hook;
+    }
+
+    static JsonParser createParser(Path jsonFile) throws IOException {
+        return objectMapper.getFactory().createParser(jsonFile.toFile());
+    }
+
+    /**
+     * Reads the Workflows and Users arrays, skipping the product group tree.
+     */
+    static Header readHeader(Path jsonFile) throws IOException {
+        List<Workflow> workflows = new ArrayList<>();
+        List<User> users = new ArrayList<>();
+
+        try (JsonParser p = createParser(jsonFile)) {
+            expectRootObject(p);
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.getCurrentName();
+                JsonToken token = p.nextToken();
+                if ("Workflows".equals(field) && token == JsonToken.START_ARRAY) {
+                    while (p.nextToken() == JsonToken.START_OBJECT) {
+                        workflows.add(p.readValueAs(Workflow.class));
+                    }
+                } else if ("Users".equals(field) && token == JsonToken.START_ARRAY) {
+                    while (p.nextToken() == JsonToken.START_OBJECT) {
+                        users.add(p.readValueAs(User.class));
+                    }
+                } else {
+                    p.skipChildren();
+                }
+            }
+        }
+        return new Header(workflows, users);
+    }
+
+    /**
+     * Walks ProductGroupTree of an open parser positioned before the root object
+     * and writes every record to the writer. Does not flush the writer.
+     *
+     * @param initialStates Initial state per workflow id; groups referencing other ids get no workflow
+     */
+    static void parseTree(JsonParser parser, CatalogWriter writer, Map<String, String> initialStates, RecordHook hook)
+            throws IOException, SQLException {
+        new CatalogTreeParser(parser, writer, initialStates, hook).parseTree();
+    }
+
+    private void parseTree() throws IOException, SQLException {
+        expectRootObject(parser);
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if ("ProductGroupTree".equals(field) && token == JsonToken.START_ARRAY) {
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    readGroup(null, null);
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * @param inheritedWorkflowId The parent's effective workflow, used if the group has none of its own
+     */
+    private void readGroup(String parentId, String inheritedWorkflowId) throws IOException, SQLException {
+        String id = null;
+        String name = null;
+        String workflowId = null;
+        String effectiveWorkflowId = inheritedWorkflowId;
+        boolean written = false;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            switch (field) {
+                case "Id", "Name", "Workflow" -> {
+                    if (written) {
+                        throw fieldAfterChildren("Product group", id, field, "SubGroups/Products");
+                    }
+                    switch (field) {
+                        case "Id" -> id = parser.getValueAsString();
+                        case "Name" -> name = parser.getValueAsString();
+                        default -> workflowId = parser.getValueAsString();
+                    }
+                }
+                case "SubGroups", "Products" -> {
+                    if (!written) {
+                        workflowId = writeGroup(id, name, workflowId, parentId);
+                        if (workflowId != null) {
+                            effectiveWorkflowId = workflowId;
+                        }
+                        written = true;
+                    }
+                    if (token != JsonToken.START_ARRAY) {
+                        parser.skipChildren();
+                    } else if ("SubGroups".equals(field)) {
+                        while (parser.nextToken() == JsonToken.START_OBJECT) {
+                            readGroup(id, effectiveWorkflowId);
+                        }
+                    } else {
+                        String initialStateId = effectiveWorkflowId != null ? initialStates.get(effectiveWorkflowId) : null;
+                        while (parser.nextToken() == JsonToken.START_OBJECT) {
+                            readProduct(id, initialStateId);
+                        }
+                    }
+                }
+                default -> parser.skipChildren();
+            }
+        }
+
+        if (!written) {
+            writeGroup(id, name, workflowId, parentId);
+        }
+    }
+
+    private String writeGroup(String id, String name, String workflowId, String parentId) throws IOException, SQLException {
+        if (id == null) {
+            throw new IOException("Product group without Id before its SubGroups/Products at " + parser.currentLocation());
+        }
+        // Foreign keys are enforced, so a reference to an unknown workflow is imported as "no workflow"
+        if (workflowId != null && !initialStates.containsKey(workflowId)) {
+            System.err.println("Product group " + name + " references unknown workflow " + workflowId + "; ignoring it.");
+            workflowId = null;
+        }
+        if (hook.beforeRecord()) {
+            writer.addGroup(id, name, workflowId, parentId);
+            hook.afterRecord();
+        }
+        return workflowId;
+    }
+
+    private void readProduct(String groupId, String initialStateId) throws IOException, SQLException {
+        String id = null;
+        String name = null;
+        String productNumber = null;
+        boolean written = false;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            switch (field) {
+                case "Id", "Name", "ProductNumber" -> {
+                    if (written) {
+                        throw fieldAfterChildren("Product", id, field, "Instances");
+                    }
+                    switch (field) {
+                        case "Id" -> id = parser.getValueAsString();
+                        case "Name" -> name = parser.getValueAsString();
+                        default -> productNumber = parser.getValueAsString();
+                    }
+                }
+                case "Instances" -> {
+                    if (!written) {
+                        writeProduct(id, name, productNumber, groupId);
+                        written = true;
+                    }
+                    if (token == JsonToken.START_ARRAY) {
+                        while (parser.nextToken() == JsonToken.START_OBJECT) {
+                            readInstance(id, initialStateId);
+                        }
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                default -> parser.skipChildren();
+            }
+        }
+
+        if (!written) {
+            writeProduct(id, name, productNumber, groupId);
+        }
+    }
+
+    private void writeProduct(String id, String name, String productNumber, String groupId) throws IOException, SQLException {
+        if (id == null) {
+            throw new IOException("Product without Id before its Instances at " + parser.currentLocation());
+        }
+        if (hook.beforeRecord()) {
+            writer.addProduct(id, name, productNumber, groupId);
+            hook.afterRecord();
+        }
+    }
+
+    private void readInstance(String productId, String initialStateId) throws IOException, SQLException {
+        String serialNumber = null;
+        String customerMail = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "SerialNumber" -> serialNumber = parser.getValueAsString();
+                case "CustomerMail" -> customerMail = parser.getValueAsString();
+                default -> parser.skipChildren();
+            }
+        }
+
+        if (hook.beforeRecord()) {
+            writer.addInstance(productId, serialNumber, customerMail, initialStateId);
+            hook.afterRecord();
+        }
+    }
+
+    /**
+     * Rows are written when their children start, so fields after the children would be lost.
+     */
+    private IOException fieldAfterChildren(String record, String id, String field, String children) {
+        return new IOException(record + " " + id + " has its " + field + " after its " + children
+            + " at " + parser.currentLocation() + "; the streaming importer needs these fields first");
+    }
+
+    private static void expectRootObject(JsonParser p) throws IOException {
+        if (p.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Expected a JSON object at the root of the data file");
+        }
+    }
+}
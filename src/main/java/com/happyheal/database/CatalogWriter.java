@@ -0,0 +1,205 @@
+package com.happyheal.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Batched writer for product groups, products and product instances.
+ * Rows are queued with JDBC batching and flushed together once the batch size is
+ * reached, always in parent-before-child order so foreign keys hold at every flush.
+ * The caller owns the connection and its transaction.
+ *
+ * <p>In {@link Mode#INSERT} mode rows are plain inserts into empty tables. In
+ * {@link Mode#UPSERT} mode (used by the delta sync) existing rows are only rewritten
+ * when their content hash changed, instances keep their current state, and every
+ * key is recorded in the sync's temp tables so unseen rows can be deleted afterwards.</p>
+ */
+class CatalogWriter implements AutoCloseable {
+
+    static final int DEFAULT_BATCH_SIZE = Integer.getInteger("happyheal.import.batchSize", 1000);
+
+    enum Mode { INSERT, UPSERT }
+
+    private static final String INSERT_GROUP =
+        "INSERT INTO product_groups (id, name, workflow_id, parent_id, content_hash) VALUES (?, ?, ?, ?, ?)";
+    private static final String INSERT_PRODUCT =
+        "INSERT INTO products (id, name, product_number, group_id, content_hash) VALUES (?, ?, ?, ?, ?)";
+    private static final String INSERT_INSTANCE =
+        "INSERT INTO product_instances (product_id, serial_number, customer_mail, current_state_id, content_hash) VALUES (?, ?, ?, ?, ?)";
+
+    private static final String UPSERT_GROUP = INSERT_GROUP + """
+         ON CONFLICT (id) DO UPDATE SET
+            name = excluded.name, workflow_id = excluded.workflow_id,
+            parent_id = excluded.parent_id, content_hash = excluded.content_hash
+        WHERE product_groups.content_hash IS NOT excluded.content_hash""";
+    private static final String UPSERT_PRODUCT = INSERT_PRODUCT + """
+         ON CONFLICT (id) DO UPDATE SET
+            name = excluded.name, product_number = excluded.product_number,
+            group_id = excluded.group_id, content_hash = excluded.content_hash
+        WHERE products.content_hash IS NOT excluded.content_hash""";
+    // current_state_id is deliberately not updated: existing instances keep their workflow state
+    private static final String UPSERT_INSTANCE = INSERT_INSTANCE + """
+         ON CONFLICT (serial_number) DO UPDATE SET
+            product_id = excluded.product_id, customer_mail = excluded.customer_mail,
+            content_hash = excluded.content_hash
+        WHERE product_instances.content_hash IS NOT excluded.content_hash""";
+
+    private final Mode mode;
+    private final PreparedStatement groupStmt;
+    private final PreparedStatement productStmt;
+    private final PreparedStatement instanceStmt;
+    private final PreparedStatement seenGroupStmt;
+    private final PreparedStatement seenProductStmt;
+    private final PreparedStatement seenInstanceStmt;
+    private final int batchSize;
+
+    private int pendingRows;
+    private long groupCount;
+    private long productCount;
+    private long instanceCount;
+    private long changedRows;
+
+    CatalogWriter(Connection conn, int batchSize) throws SQLException {
+        this(conn, batchSize, Mode.INSERT);
+    }
+
+    CatalogWriter(Connection conn, int batchSize, Mode mode) throws SQLException {
+        this.batchSize = batchSize;
+        this.mode = mode;
+        boolean upsert = mode == Mode.UPSERT;
+        this.groupStmt = conn.prepareStatement(upsert ? UPSERT_GROUP : INSERT_GROUP);
+        this.productStmt = conn.prepareStatement(upsert ? UPSERT_PRODUCT : INSERT_PRODUCT);
+        this.instanceStmt = conn.prepareStatement(upsert ? UPSERT_INSTANCE : INSERT_INSTANCE);
+        if (upsert) {
+            createSeenTables(conn);
+            this.seenGroupStmt = conn.prepareStatement("INSERT OR IGNORE INTO temp.sync_seen_groups (id) VALUES (?)");
+            this.seenProductStmt = conn.prepareStatement("INSERT OR IGNORE INTO temp.sync_seen_products (id) VALUES (?)");
+            this.seenInstanceStmt = conn.prepareStatement("INSERT OR IGNORE INTO temp.sync_seen_instances (serial_number) VALUES (?)");
+        } else {
+            this.seenGroupStmt = null;
+            this.seenProductStmt = null;
+            this.seenInstanceStmt = null;
+        }
+    }
+
+    private static void createSeenTables(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TEMP TABLE IF NOT EXISTS sync_seen_groups (id TEXT PRIMARY KEY)");
+            stmt.execute("CREATE TEMP TABLE IF NOT EXISTS sync_seen_products (id TEXT PRIMARY KEY)");
+            stmt.execute("CREATE TEMP TABLE IF NOT EXISTS sync_seen_instances (serial_number TEXT PRIMARY KEY)");
+            stmt.execute("DELETE FROM temp.sync_seen_groups");
+            stmt.execute("DELETE FROM temp.sync_seen_products");
+            stmt.execute("DELETE FROM temp.sync_seen_instances");
+        }
+    }
+
+    void addGroup(String id, String name, String workflowId, String parentId) throws SQLException {
+        groupStmt.setString(1, id);
+        groupStmt.setString(2, name);
+        groupStmt.setString(3, workflowId);
+        groupStmt.setString(4, parentId);
+        groupStmt.setLong(5, ContentHash.of(name, workflowId, parentId));
+        groupStmt.addBatch();
+        markSeen(seenGroupStmt, id);
+        groupCount++;
+        rowAdded();
+    }
+
+    void addProduct(String id, String name, String productNumber, String groupId) throws SQLException {
+        productStmt.setString(1, id);
+        productStmt.setString(2, name);
+        productStmt.setString(3, productNumber);
+        productStmt.setString(4, groupId);
+        productStmt.setLong(5, ContentHash.of(name, productNumber, groupId));
+        productStmt.addBatch();
+        markSeen(seenProductStmt, id);
+        productCount++;
+        rowAdded();
+    }
+
+    void addInstance(String productId, String serialNumber, String customerMail, String initialStateId) throws SQLException {
+        instanceStmt.setString(1, productId);
+        instanceStmt.setString(2, serialNumber);
+        instanceStmt.setString(3, customerMail);
+        instanceStmt.setString(4, initialStateId);
+        instanceStmt.setLong(5, ContentHash.of(productId, customerMail));
+        instanceStmt.addBatch();
+        markSeen(seenInstanceStmt, serialNumber);
+        instanceCount++;
+        rowAdded();
+    }
+
+    private void markSeen(PreparedStatement seenStmt, String key) throws SQLException {
+        if (seenStmt != null) {
+            seenStmt.setString(1, key);
+            seenStmt.addBatch();
+        }
+    }
+
+    private void rowAdded() throws SQLException {
+        if (++pendingRows >= batchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Executes all queued rows, groups first, then products, then instances.
+     */
+    void flush() throws SQLException {
+        if (pendingRows == 0) {
+            return;
+        }
+        changedRows += sum(groupStmt.executeBatch());
+        changedRows += sum(productStmt.executeBatch());
+        changedRows += sum(instanceStmt.executeBatch());
+        if (mode == Mode.UPSERT) {
+            seenGroupStmt.executeBatch();
+            seenProductStmt.executeBatch();
+            seenInstanceStmt.executeBatch();
+        }
+        pendingRows = 0;
+    }
+
+    private static long sum(int[] updateCounts) {
+        long total = 0;
+        for (int count : updateCounts) {
+            if (count > 0) {
+                total += count;
+            }
+        }
+        return total;
+    }
+
+    long getGroupCount() {
+        return groupCount;
+    }
+
+    long getProductCount() {
+        return productCount;
+    }
+
+    long getInstanceCount() {
+        return instanceCount;
+    }
+
+    /**
+     * Rows actually inserted or rewritten; unchanged rows in upsert mode are not counted.
+     */
+    long getChangedRows() {
+        return changedRows;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        groupStmt.close();
+        productStmt.close();
+        instanceStmt.close();
+        if (mode == Mode.UPSERT) {
+            seenGroupStmt.close();
+            seenProductStmt.close();
+            seenInstanceStmt.close();
+        }
+    }
+}
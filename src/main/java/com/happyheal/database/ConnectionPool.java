@@ -0,0 +1,410 @@
+package com.happyheal.database;
+
+import com.happyheal.metrics.LatencyHistogram;
+import com.happyheal.metrics.MetricsRegistry;
+import jdk.jfr.EventType;
+import org.sqlite.BusyHandler;
+import org.sqlite.SQLiteConfig;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pool of pre-configured SQLite connections with a single writer and several readers.
+ * Every connection is opened in WAL mode with foreign keys, a busy handler and the
+ * configured page cache, so callers never have to issue PRAGMAs themselves.
+ *
+ * <p>The writer is guarded by a reentrant lock: a thread that already holds it gets
+ * the same connection again, so nested helpers cannot deadlock. Readers come from a
+ * fixed queue. Closing a handed-out connection returns it to the pool and closes any
+ * statements that were created through it.</p>
+ *
+ * <p>Connection waits and, unless {@code happyheal.metrics.sqlTiming} is false, the execution
+ * time of every statement are recorded in the {@link MetricsRegistry}. Statements are also
+ * reported as {@link SqlStatementEvent}s to Flight Recorder.</p>
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    private static final boolean TIME_STATEMENTS = Boolean.parseBoolean(System.getProperty("happyheal.metrics.sqlTiming", "true"));
+    private static final EventType SQL_EVENTS = EventType.getEventType(SqlStatementEvent.class);
+    private static final LatencyHistogram writerWait = MetricsRegistry.histogram(
+            "happyheal_db_connection_wait_seconds", "Time waiting for a pooled connection", "role", "writer");
+    private static final LatencyHistogram readerWait = MetricsRegistry.histogram(
+            "happyheal_db_connection_wait_seconds", "Time waiting for a pooled connection", "role", "reader");
+    private static final LatencyHistogram queryLatency = MetricsRegistry.histogram(
+            "happyheal_db_statement_seconds", "SQL statement execution time", "operation", "query");
+    private static final LatencyHistogram updateLatency = MetricsRegistry.histogram(
+            "happyheal_db_statement_seconds", "SQL statement execution time", "operation", "update");
+    private static final LatencyHistogram batchLatency = MetricsRegistry.histogram(
+            "happyheal_db_statement_seconds", "SQL statement execution time", "operation", "batch");
+
+    private final String url;
+    private final int busyTimeoutMs;
+    private final long acquireTimeoutMs;
+
+    private final Connection writer;
+    private final ReentrantLock writerLock = new ReentrantLock(true);
+    private final BlockingQueue<Connection> readers;
+    private final List<Connection> allReaders = new ArrayList<>();
+    private volatile boolean closed;
+
+    // Metrics
+    private final AtomicLong acquisitions = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong acquireTimeouts = new AtomicLong();
+    private final AtomicLong busyRetries = new AtomicLong();
+    private final AtomicInteger activeReaders = new AtomicInteger();
+
+    /**
+     * Opens the writer and all reader connections.
+     *
+     * @param url The JDBC URL of the database
+     * @param readerCount Number of concurrent reader connections
+     * @param busyTimeoutMs How long a statement retries on SQLITE_BUSY before failing
+     * @param cacheSizeKb Page cache size per connection in KiB
+     * @param acquireTimeoutMs How long a caller waits for a free connection
+     */
+    public ConnectionPool(String url, int readerCount, int busyTimeoutMs, int cacheSizeKb, long acquireTimeoutMs) throws SQLException {
+        this.url = url;
+        this.busyTimeoutMs = busyTimeoutMs;
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        this.readers = new ArrayBlockingQueue<>(Math.max(1, readerCount));
+
+        SQLiteConfig config = new SQLiteConfig();
+        config.setJournalMode(SQLiteConfig.JournalMode.WAL);
+        config.setSynchronous(SQLiteConfig.SynchronousMode.NORMAL);
+        config.enforceForeignKeys(true);
+        // Negative cache_size is interpreted by SQLite as KiB instead of pages
+        config.setCacheSize(-cacheSizeKb);
+
+        this.writer = open(config);
+        try {
+            for (int i = 0; i < Math.max(1, readerCount); i++) {
+                Connection reader = open(config);
+                try (Statement stmt = reader.createStatement()) {
+                    stmt.execute("PRAGMA query_only = ON");
+                }
+                allReaders.add(reader);
+                readers.add(reader);
+            }
+        } catch (SQLException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private Connection open(SQLiteConfig config) throws SQLException {
+        Connection conn = DriverManager.getConnection(url, config.toProperties());
+        // Replaces busy_timeout so retries can be counted
+        BusyHandler.setHandler(conn, new CountingBusyHandler());
+        return conn;
+    }
+
+    /**
+     * Acquires the writer connection, waiting until no other thread holds it.
+     */
+    public Connection acquireWriter() throws SQLException {
+        ensureOpen();
+        long start = System.nanoTime();
+        boolean locked;
+        try {
+            locked = writerLock.tryLock(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the writer connection", e);
+        }
+        if (!locked) {
+            acquireTimeouts.incrementAndGet();
+            throw new SQLException("Timed out after " + acquireTimeoutMs + " ms waiting for the writer connection");
+        }
+        recordWait(System.nanoTime() - start, writerWait);
+        return wrap(writer, true);
+    }
+
+    /**
+     * Acquires one of the read-only connections.
+     */
+    public Connection acquireReader() throws SQLException {
+        ensureOpen();
+        long start = System.nanoTime();
+        Connection reader;
+        try {
+            reader = readers.poll(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a reader connection", e);
+        }
+        if (reader == null) {
+            acquireTimeouts.incrementAndGet();
+            throw new SQLException("Timed out after " + acquireTimeoutMs + " ms waiting for a reader connection");
+        }
+        recordWait(System.nanoTime() - start, readerWait);
+        activeReaders.incrementAndGet();
+        return wrap(reader, false);
+    }
+
+    private void ensureOpen() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+    }
+
+    private void recordWait(long waitNanos, LatencyHistogram histogram) {
+        histogram.record(waitNanos);
+        acquisitions.incrementAndGet();
+        totalWaitNanos.addAndGet(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    private Connection wrap(Connection target, boolean isWriter) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new PooledConnectionHandler(target, isWriter));
+    }
+
+    private void release(Connection target, boolean isWriter) {
+        boolean outermost = !isWriter || writerLock.getHoldCount() == 1;
+        try {
+            // Don't leak an open transaction to the next borrower
+            if (outermost && !closed && !target.getAutoCommit()) {
+                target.rollback();
+                target.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            System.err.println("Failed to reset pooled connection: " + e.getMessage());
+        } finally {
+            if (isWriter) {
+                writerLock.unlock();
+            } else {
+                activeReaders.decrementAndGet();
+                readers.offer(target);
+            }
+        }
+    }
+
+    /**
+     * Returns a snapshot of the pool metrics.
+     */
+    public PoolStats getStats() {
+        return new PoolStats(
+                writerLock.isLocked() ? 1 : 0,
+                activeReaders.get(),
+                allReaders.size(),
+                acquisitions.get(),
+                totalWaitNanos.get(),
+                maxWaitNanos.get(),
+                acquireTimeouts.get(),
+                busyRetries.get());
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        closeQuietly(writer);
+        for (Connection reader : allReaders) {
+            closeQuietly(reader);
+        }
+    }
+
+    private static void closeQuietly(Connection conn) {
+        try {
+            if (conn != null) {
+                conn.close();
+            }
+        } catch (SQLException e) {
+            System.err.println("Failed to close pooled connection: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Wraps a statement so its execute calls are timed and reported as {@link SqlStatementEvent}s;
+     * other calls go straight through.
+     *
+     * @param sql The SQL of a prepared statement, or null for a plain statement
+     */
+    private static Object timed(Statement statement, Class<?> type, String sql, String connection) {
+        return Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            String operation = operationOf(method.getName());
+            if (operation == null) {
+                try {
+                    return method.invoke(statement, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+            SqlStatementEvent event = new SqlStatementEvent();
+            event.begin();
+            long start = System.nanoTime();
+            try {
+                return method.invoke(statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                if (TIME_STATEMENTS) {
+                    latencyOf(operation).record(System.nanoTime() - start);
+                }
+                event.end();
+                if (event.shouldCommit()) {
+                    event.sql = sql != null ? sql : args != null && args.length > 0 && args[0] instanceof String text ? text : null;
+                    event.operation = operation;
+                    event.connection = connection;
+                    event.commit();
+                }
+            }
+        });
+    }
+
+    private static String operationOf(String method) {
+        return switch (method) {
+            case "executeQuery" -> "query";
+            case "execute", "executeUpdate", "executeLargeUpdate" -> "update";
+            case "executeBatch", "executeLargeBatch" -> "batch";
+            default -> null;
+        };
+    }
+
+    private static LatencyHistogram latencyOf(String operation) {
+        return switch (operation) {
+            case "query" -> queryLatency;
+            case "update" -> updateLatency;
+            default -> batchLatency;
+        };
+    }
+
+    /**
+     * Point-in-time view of the pool metrics.
+     */
+    public record PoolStats(int activeWriters, int activeReaders, int readerCount, long acquisitions,
+                            long totalWaitNanos, long maxWaitNanos, long acquireTimeouts, long busyRetries) {
+
+        public double averageWaitMillis() {
+            return acquisitions == 0 ? 0 : totalWaitNanos / 1_000_000.0 / acquisitions;
+        }
+    }
+
+    /**
+     * Retries on SQLITE_BUSY with a short backoff until the busy timeout is used up.
+     */
+    private class CountingBusyHandler extends BusyHandler {
+
+        private long busySince;
+
+        @Override
+        protected int callback(int previousInvocations) {
+            long now = System.nanoTime();
+            if (previousInvocations == 0) {
+                busySince = now;
+            }
+            if (TimeUnit.NANOSECONDS.toMillis(now - busySince) >= busyTimeoutMs) {
+                return 0;
+            }
+            busyRetries.incrementAndGet();
+            try {
+                Thread.sleep(Math.min(1L << Math.min(previousInvocations, 5), 25L));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return 0;
+            }
+            return 1;
+        }
+    }
+
+    /**
+     * Hands out a pooled connection; close() returns it to the pool instead of closing it.
+     */
+    private class PooledConnectionHandler implements InvocationHandler {
+
+        private final Connection target;
+        private final boolean isWriter;
+        private final List<Statement> statements = new ArrayList<>();
+        private boolean released;
+
+        PooledConnectionHandler(Connection target, boolean isWriter) {
+            this.target = target;
+            this.isWriter = isWriter;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!released) {
+                        released = true;
+                        closeStatements();
+                        release(target, isWriter);
+                    }
+                    return null;
+                case "isClosed":
+                    return released || target.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection{" + (isWriter ? "writer" : "reader") + ", released=" + released + '}';
+                default:
+                    break;
+            }
+            if (released) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+            try {
+                Object result = method.invoke(target, args);
+                if (result instanceof Statement statement) {
+                    trackStatement(statement);
+                    // Without timing, only wrap while a recording has the SQL events enabled
+                    if (TIME_STATEMENTS || SQL_EVENTS.isEnabled()) {
+                        String sql = args != null && args.length > 0 && args[0] instanceof String text ? text : null;
+                        return timed(statement, method.getReturnType(), sql, isWriter ? "writer" : "reader");
+                    }
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        private void trackStatement(Statement statement) throws SQLException {
+            // Long-held connections may create many statements; forget the ones already closed
+            if (statements.size() >= 64) {
+                statements.removeIf(this::isStatementClosed);
+            }
+            statements.add(statement);
+        }
+
+        private boolean isStatementClosed(Statement statement) {
+            try {
+                return statement.isClosed();
+            } catch (SQLException e) {
+                return true;
+            }
+        }
+
+        private void closeStatements() {
+            for (Statement statement : statements) {
+                try {
+                    statement.close();
+                } catch (SQLException e) {
+                    System.err.println("Failed to close pooled statement: " + e.getMessage());
+                }
+            }
+            statements.clear();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.happyheal.database;
+
+/**
+ * 64-bit FNV-1a hash over a row's imported fields. Stored next to each row so the
+ * delta sync can tell changed rows from unchanged ones without comparing columns.
+ */
+final class ContentHash {
+    
+    private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+    
+    private ContentHash() {}
+    
+    static long of(String... fields) {
+        long hash = OFFSET_BASIS;
+        for (String field : fields) {
+            if (field == null) {
+                // Distinguish null from the empty string
+                hash = (hash ^ 0xff) * PRIME;
+            } else {
+                for (int i = 0; i < field.length(); i++) {
+                    char c = field.charAt(i);
+                    hash = (hash ^ (c & 0xff)) * PRIME;
+                    hash = (hash ^ (c >>> 8)) * PRIME;
+                }
+            }
+            // Field separator
+            hash = (hash ^ 0xfe) * PRIME;
+        }
+        return hash;
+    }
+}
@@ -1,12 +1,14 @@
 package com.happyheal.database;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.happyheal.model.*;
 
-import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.*;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -17,23 +19,69 @@ public class DataImporter {
     
     private static final ObjectMapper objectMapper = new ObjectMapper();
     
+    // Files at least this large are imported with the streaming importer
+    private static final long STREAMING_THRESHOLD_BYTES = Long.getLong("happyheal.import.streamingThresholdBytes", 64L * 1024 * 1024);
+    
     /**
      * Imports all initial data from data.json if the database is empty.
      */
     public static void importInitialData() {
+        importInitialData(Paths.get(System.getProperty("happyheal.data.path", "data.json")));
+    }
+    
+    /**
+     * Imports all initial data from the given JSON file if the database is empty.
+     * Small files are imported in a single transaction on the writer connection; large
+     * files and interrupted imports go through the {@link StreamingDataImporter}.
+     */
+    public static void importInitialData(Path jsonFile) {
         try {
-            if (isDatabaseEmpty()) {
+            if (StreamingDataImporter.hasCheckpoint(jsonFile)) {
+                System.out.println("Found an interrupted import. Resuming...");
+                StreamingDataImporter.importFile(jsonFile, ImportProgressListener.logging());
+                System.out.println("Initial data import completed successfully.");
+            } else if (isDatabaseEmpty() && Files.size(jsonFile) >= STREAMING_THRESHOLD_BYTES) {
+                System.out.println("Database is empty. Streaming initial data from " + jsonFile + "...");
+                StreamingDataImporter.importFile(jsonFile, ImportProgressListener.logging());
+                System.out.println("Initial data import completed successfully.");
+            } else if (isDatabaseEmpty()) {
                 System.out.println("Database is empty. Importing initial data...");
                 
                 // Load data from JSON file
-                AppData appData = loadDataFromJson();
+                ImportPhaseEvent parse = ImportPhaseEvent.begin("parse");
+                AppData appData = loadDataFromJson(jsonFile);
+                parse.finish(appData.getUsers().size() + appData.getWorkflows().size() + appData.getProductGroupTree().size());
                 
                 // Import data into database
-                importUsers(appData.getUsers());
-                importWorkflows(appData.getWorkflows());
-                importProductGroups(appData.getProductGroupTree());
+                try (Connection conn = DatabaseManager.getConnection()) {
+                    conn.setAutoCommit(false);
+                    try {
+                        ImportPhaseEvent phase = ImportPhaseEvent.begin("users");
+                        importUsers(conn, appData.getUsers());
+                        phase.finish(appData.getUsers().size());
+                        phase = ImportPhaseEvent.begin("workflows");
+                        importWorkflows(conn, appData.getWorkflows());
+                        phase.finish(appData.getWorkflows().size());
+                        phase = ImportPhaseEvent.begin("productGroupTree");
+                        long records = importProductGroups(conn, appData.getProductGroupTree(), appData.getWorkflows());
+                        phase.finish(records);
+                        phase = ImportPhaseEvent.begin("commit");
+                        conn.commit();
+                        phase.finish(records);
+                        DatabaseManager.workflowsChanged();
+                        DatabaseManager.instancesAdded();
+                    } catch (SQLException e) {
+                        conn.rollback();
+                        throw e;
+                    } finally {
+                        conn.setAutoCommit(true);
+                    }
+                }
                 
                 System.out.println("Initial data import completed successfully.");
+            } else if ("sync".equalsIgnoreCase(System.getProperty("happyheal.import.mode"))) {
+                System.out.println("Database already contains data. Applying changes from " + jsonFile + "...");
+                DeltaSynchronizer.synchronize(jsonFile);
             } else {
                 System.out.println("Database already contains data. Skipping initial import.");
             }
@@ -45,7 +93,7 @@ public class DataImporter {
     }
     
     private static boolean isDatabaseEmpty() throws SQLException {
-        try (Connection conn = DatabaseManager.getConnection()) {
+        try (Connection conn = DatabaseManager.getReadConnection()) {
             Statement stmt = conn.createStatement();
             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM users");
             rs.next();
@@ -53,52 +101,50 @@ public class DataImporter {
         }
     }
     
-    private static AppData loadDataFromJson() throws IOException {
-        File jsonFile = new File("data.json");
-        return objectMapper.readValue(jsonFile, AppData.class);
+    private static AppData loadDataFromJson(Path jsonFile) throws IOException {
+        return objectMapper.readValue(jsonFile.toFile(), AppData.class);
     }
     
-    private static void importUsers(List<User> users) throws SQLException {
-        try (Connection conn = DatabaseManager.getConnection()) {
-            String sql = "INSERT INTO users (username, password, display_name) VALUES (?, ?, ?)";
-            PreparedStatement pstmt = conn.prepareStatement(sql);
-            
-            for (User user : users) {
-                pstmt.setString(1, user.getUsername());
-                pstmt.setString(2, user.getPassword());
-                pstmt.setString(3, user.getDisplayName());
-                pstmt.executeUpdate();
-            }
-            
-            pstmt.close();
-            System.out.println("Imported " + users.size() + " users.");
+    static void importUsers(Connection conn, List<User> users) throws SQLException {
+        String sql = "INSERT INTO users (username, password, display_name) VALUES (?, ?, ?)";
+        PreparedStatement pstmt = conn.prepareStatement(sql);
+        
+        for (User user : users) {
+            pstmt.setString(1, user.getUsername());
+            pstmt.setString(2, user.getPassword());
+            pstmt.setString(3, user.getDisplayName());
+            pstmt.addBatch();
         }
+        pstmt.executeBatch();
+        
+        pstmt.close();
+        System.out.println("Imported " + users.size() + " users.");
     }
     
-    private static void importWorkflows(List<Workflow> workflows) throws SQLException {
-        try (Connection conn = DatabaseManager.getConnection()) {
-            importWorkflowEntities(conn, workflows);
-            importWorkflowStates(conn, workflows);
-            importWorkflowTransitions(conn, workflows);
-            
-            System.out.println("Imported " + workflows.size() + " workflows.");
-        }
+    static void importWorkflows(Connection conn, List<Workflow> workflows) throws SQLException {
+        importWorkflowEntities(conn, workflows);
+        importWorkflowStates(conn, workflows);
+        importWorkflowTransitions(conn, workflows);
+        
+        System.out.println("Imported " + workflows.size() + " workflows.");
     }
     
     private static void importWorkflowEntities(Connection conn, List<Workflow> workflows) throws SQLException {
-        String sql = "INSERT INTO workflows (id, name) VALUES (?, ?)";
+        String sql = "INSERT INTO workflows (id, name, content_hash) VALUES (?, ?, ?)";
         PreparedStatement pstmt = conn.prepareStatement(sql);
         
         for (Workflow workflow : workflows) {
             pstmt.setString(1, workflow.getId());
             pstmt.setString(2, workflow.getName());
-            pstmt.executeUpdate();
+            pstmt.setLong(3, workflowHash(workflow));
+            pstmt.addBatch();
         }
+        pstmt.executeBatch();
         
         pstmt.close();
     }
     
-    private static void importWorkflowStates(Connection conn, List<Workflow> workflows) throws SQLException {
+    static void importWorkflowStates(Connection conn, List<Workflow> workflows) throws SQLException {
         String sql = "INSERT INTO workflow_states (id, workflow_id, title, color) VALUES (?, ?, ?, ?)";
         PreparedStatement pstmt = conn.prepareStatement(sql);
         
@@ -108,14 +154,15 @@ public class DataImporter {
                 pstmt.setString(2, workflow.getId());
                 pstmt.setString(3, state.getTitle());
                 pstmt.setString(4, state.getColor());
-                pstmt.executeUpdate();
+                pstmt.addBatch();
             }
         }
+        pstmt.executeBatch();
         
         pstmt.close();
     }
     
-    private static void importWorkflowTransitions(Connection conn, List<Workflow> workflows) throws SQLException {
+    static void importWorkflowTransitions(Connection conn, List<Workflow> workflows) throws SQLException {
         String sql = "INSERT INTO workflow_transitions (workflow_id, type, from_state, to_state, setup_json) VALUES (?, ?, ?, ?, ?)";
         PreparedStatement pstmt = conn.prepareStatement(sql);
         
@@ -125,124 +172,99 @@ public class DataImporter {
                 pstmt.setString(2, transition.getType());
                 pstmt.setString(3, transition.getFrom());
                 pstmt.setString(4, transition.getTo());
-                
-                // Convert setup map to JSON string
-                String setupJson = null;
-                if (transition.getSetup() != null) {
-                    try {
-                        setupJson = objectMapper.writeValueAsString(transition.getSetup());
-                    } catch (Exception e) {
-                        System.err.println("Failed to serialize setup for transition: " + e.getMessage());
-                    }
-                }
-                pstmt.setString(5, setupJson);
-                
-                pstmt.executeUpdate();
+                pstmt.setString(5, toSetupJson(transition));
+                pstmt.addBatch();
             }
         }
+        pstmt.executeBatch();
         
         pstmt.close();
     }
     
-    private static void importProductGroups(List<ProductGroup> rootGroups) throws SQLException {
-        try (Connection conn = DatabaseManager.getConnection()) {
-            // Import groups in tree order (parent before children)
-            for (ProductGroup rootGroup : rootGroups) {
-                importProductGroupTree(conn, rootGroup, null);
-            }
-            
-            // Import products for all groups
-            for (ProductGroup rootGroup : rootGroups) {
-                importProductsForGroupTree(conn, rootGroup);
-            }
-            
-            System.out.println("Imported product group tree with products.");
+    /**
+     * Content hash over a workflow with all its states and transitions.
+     */
+    static long workflowHash(Workflow workflow) {
+        try {
+            return ContentHash.of(objectMapper.writeValueAsString(workflow));
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to serialize workflow " + workflow.getId(), e);
         }
     }
     
-    private static void importProductGroupTree(Connection conn, ProductGroup group, String parentId) throws SQLException {
-        // Import current group
-        String sql = "INSERT INTO product_groups (id, name, workflow_id, parent_id) VALUES (?, ?, ?, ?)";
-        PreparedStatement pstmt = conn.prepareStatement(sql);
-        
-        pstmt.setString(1, group.getId());
-        pstmt.setString(2, group.getName());
-        pstmt.setString(3, group.getWorkflow());
-        pstmt.setString(4, parentId);
-        pstmt.executeUpdate();
-        pstmt.close();
-        
-        // Import subgroups recursively
-        for (ProductGroup subGroup : group.getSubGroups()) {
-            importProductGroupTree(conn, subGroup, group.getId());
+    static String toSetupJson(WorkflowTransition transition) {
+        // Convert setup map to JSON string
+        if (transition.getSetup() == null) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(transition.getSetup());
+        } catch (Exception e) {
+            System.err.println("Failed to serialize setup for transition: " + e.getMessage());
+            return null;
         }
     }
     
-    private static void importProductsForGroupTree(Connection conn, ProductGroup group) throws SQLException {
-        // Import products for current group
-        importProducts(conn, group.getProducts(), group.getId());
-        
-        // Import products for subgroups recursively
-        for (ProductGroup subGroup : group.getSubGroups()) {
-            importProductsForGroupTree(conn, subGroup);
+    /**
+     * Maps each workflow id to its initial state (the first state in the list).
+     */
+    static Map<String, String> resolveInitialStates(List<Workflow> workflows) {
+        Map<String, String> initialStates = new HashMap<>();
+        for (Workflow workflow : workflows) {
+            WorkflowState initialState = workflow.getInitialState();
+            initialStates.put(workflow.getId(), initialState != null ? initialState.getId() : null);
         }
+        return initialStates;
     }
     
-    private static void importProducts(Connection conn, List<Product> products, String groupId) throws SQLException {
-        String productSql = "INSERT INTO products (id, name, product_number, group_id) VALUES (?, ?, ?, ?)";
-        PreparedStatement productPstmt = conn.prepareStatement(productSql);
-        
-        String instanceSql = "INSERT INTO product_instances (product_id, serial_number, customer_mail, current_state_id) VALUES (?, ?, ?, ?)";
-        PreparedStatement instancePstmt = conn.prepareStatement(instanceSql);
+    /**
+     * Writes the product group tree.
+     *
+     * @return The number of groups, products and instances written
+     */
+    private static long importProductGroups(Connection conn, List<ProductGroup> rootGroups, List<Workflow> workflows) throws SQLException {
+        Map<String, String> initialStates = resolveInitialStates(workflows);
         
-        for (Product product : products) {
-            // Import product
-            productPstmt.setString(1, product.getId());
-            productPstmt.setString(2, product.getName());
-            productPstmt.setString(3, product.getProductNumber());
-            productPstmt.setString(4, groupId);
-            productPstmt.executeUpdate();
-            
-            // Import product instances
-            for (ProductInstance instance : product.getInstances()) {
-                instancePstmt.setString(1, product.getId());
-                instancePstmt.setString(2, instance.getSerialNumber());
-                instancePstmt.setString(3, instance.getCustomerMail());
-                
-                // Set initial state (first state of the product group's workflow)
-                String initialStateId = getInitialStateForGroup(conn, groupId);
-                instancePstmt.setString(4, initialStateId);
-                
-                instancePstmt.executeUpdate();
+        try (CatalogWriter writer = new CatalogWriter(conn, CatalogWriter.DEFAULT_BATCH_SIZE)) {
+            // Groups are written in tree order (parent before children), each followed by its products
+            for (ProductGroup rootGroup : rootGroups) {
+                importProductGroupTree(writer, rootGroup, null, null, initialStates);
             }
+            writer.flush();
+            
+            System.out.println("Imported " + writer.getGroupCount() + " product groups, "
+                + writer.getProductCount() + " products and " + writer.getInstanceCount() + " instances.");
+            return writer.getGroupCount() + writer.getProductCount() + writer.getInstanceCount();
         }
-        
-        productPstmt.close();
-        instancePstmt.close();
     }
     
-    private static String getInitialStateForGroup(Connection conn, String groupId) throws SQLException {
-        String sql = """
-            SELECT ws.id 
-            FROM workflow_states ws
-            JOIN workflows w ON ws.workflow_id = w.id
-            JOIN product_groups pg ON pg.workflow_id = w.id
-            WHERE pg.id = ?
-            ORDER BY ws.rowid LIMIT 1
-        """;
+    /**
+     * @param inheritedWorkflowId The parent's effective workflow, used if the group has none of its own
+     */
+    private static void importProductGroupTree(CatalogWriter writer, ProductGroup group, String parentId,
+                                               String inheritedWorkflowId, Map<String, String> initialStates) throws SQLException {
+        // Foreign keys are enforced, so a reference to an unknown workflow is imported as "no workflow"
+        String workflowId = group.getWorkflow();
+        if (workflowId != null && !initialStates.containsKey(workflowId)) {
+            System.err.println("Product group " + group.getName() + " references unknown workflow " + workflowId + "; ignoring it.");
+            workflowId = null;
+        }
         
-        PreparedStatement pstmt = conn.prepareStatement(sql);
-        pstmt.setString(1, groupId);
-        ResultSet rs = pstmt.executeQuery();
+        writer.addGroup(group.getId(), group.getName(), workflowId, parentId);
         
-        String stateId = null;
-        if (rs.next()) {
-            stateId = rs.getString(1);
+        // Initial state is the first state of the group's effective workflow, as in product_group_workflows
+        String effectiveWorkflowId = workflowId != null ? workflowId : inheritedWorkflowId;
+        String initialStateId = effectiveWorkflowId != null ? initialStates.get(effectiveWorkflowId) : null;
+        for (Product product : group.getProducts()) {
+            writer.addProduct(product.getId(), product.getName(), product.getProductNumber(), group.getId());
+            for (ProductInstance instance : product.getInstances()) {
+                writer.addInstance(product.getId(), instance.getSerialNumber(), instance.getCustomerMail(), initialStateId);
+            }
         }
         
-        rs.close();
-        pstmt.close();
-        
-        return stateId;
+        // Import subgroups recursively
+        for (ProductGroup subGroup : group.getSubGroups()) {
+            importProductGroupTree(writer, subGroup, group.getId(), effectiveWorkflowId, initialStates);
+        }
     }
-}
\ No newline at end of file
+}
@@ -1,21 +1,146 @@
 package com.happyheal.database;
 
+import com.happyheal.metrics.MetricsRegistry;
+
 import java.sql.*;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToDoubleFunction;
 
 /**
  * Manages SQLite database connections and schema initialization.
+ * Connections come from a {@link ConnectionPool} with one writer and several readers.
  */
 public class DatabaseManager {
     
-    private static final String DATABASE_URL = "jdbc:sqlite:happyheal.db";
+    private static volatile Path databasePath = Paths.get(System.getProperty("happyheal.db.path", "happyheal.db"));
+    private static ConnectionPool pool;
+    
+    // Bumped whenever workflow definitions may have changed, so cached views can reload
+    private static final AtomicLong workflowVersion = new AtomicLong();
+    private static final AtomicLong catalogVersion = new AtomicLong();
+    private static final AtomicLong instanceVersion = new AtomicLong();
+    
+    static {
+        MetricsRegistry.gauge("happyheal_db_active_connections", "Pooled connections currently handed out",
+            () -> currentStats(stats -> stats.activeWriters() + stats.activeReaders()));
+        MetricsRegistry.counter("happyheal_db_acquire_timeouts_total", "Callers that gave up waiting for a connection",
+            () -> (long) currentStats(ConnectionPool.PoolStats::acquireTimeouts));
+        MetricsRegistry.counter("happyheal_db_busy_retries_total", "Statement retries on SQLITE_BUSY",
+            () -> (long) currentStats(ConnectionPool.PoolStats::busyRetries));
+    }
     
     /**
-     * Creates a connection to the SQLite database.
+     * Returns the pooled writer connection. Closing it hands it back to the pool.
+     * Use this for anything that modifies the database.
      */
     public static Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(DATABASE_URL);
+        return getPool().acquireWriter();
+    }
+    
+    /**
+     * Returns a pooled read-only connection. Readers don't block on the writer,
+     * so lookups stay responsive while a bulk job is writing.
+     */
+    public static Connection getReadConnection() throws SQLException {
+        return getPool().acquireReader();
+    }
+    
+    private static synchronized ConnectionPool getPool() throws SQLException {
+        if (pool == null) {
+            pool = new ConnectionPool(
+                "jdbc:sqlite:" + databasePath,
+                Integer.getInteger("happyheal.db.readers", 4),
+                Integer.getInteger("happyheal.db.busyTimeoutMs", 5000),
+                Integer.getInteger("happyheal.db.cacheSizeKb", 16384),
+                Long.getLong("happyheal.db.acquireTimeoutMs", 30000L));
+        }
+        return pool;
+    }
+    
+    /**
+     * Returns wait time, active connection and busy retry metrics of the connection pool.
+     */
+    public static ConnectionPool.PoolStats getPoolStats() throws SQLException {
+        return getPool().getStats();
+    }
+    
+    /**
+     * Reads a pool statistic without opening the pool; 0 while it is closed.
+     */
+    private static synchronized double currentStats(ToDoubleFunction<ConnectionPool.PoolStats> stat) {
+        return pool != null ? stat.applyAsDouble(pool.getStats()) : 0;
+    }
+    
+    /**
+     * Closes all pooled connections. The pool is reopened on the next request.
+     */
+    public static synchronized void shutdown() {
+        if (pool != null) {
+            pool.close();
+            pool = null;
+        }
+    }
+    
+    /**
+     * Points the application at a different database file, e.g. a temporary one for benchmarks.
+     * Must be called before {@link #initializeDatabase()}.
+     */
+    public static synchronized void setDatabasePath(Path path) {
+        shutdown();
+        databasePath = path;
+        workflowsChanged();
+        catalogChanged();
+    }
+    
+    public static Path getDatabasePath() {
+        return databasePath;
+    }
+    
+    /**
+     * Returns a counter that changes whenever workflows, states or transitions may have changed.
+     */
+    public static long getWorkflowVersion() {
+        return workflowVersion.get();
+    }
+    
+    /**
+     * Signals that workflow definitions were written, invalidating cached workflow views.
+     */
+    public static void workflowsChanged() {
+        workflowVersion.incrementAndGet();
+    }
+    
+    /**
+     * Returns a counter that changes whenever product groups, products or instances were
+     * updated or deleted in bulk. Transitions do not change it.
+     */
+    public static long getCatalogVersion() {
+        return catalogVersion.get();
+    }
+    
+    /**
+     * Signals that catalog rows were updated or deleted, invalidating cached catalog views.
+     */
+    public static void catalogChanged() {
+        catalogVersion.incrementAndGet();
+    }
+    
+    /**
+     * Returns a counter that changes whenever product instances were inserted.
+     */
+    public static long getInstanceVersion() {
+        return instanceVersion.get();
+    }
+    
+    /**
+     * Signals that new product instances were committed and nothing else changed, so cached
+     * views only have to load the rows with higher ids.
+     */
+    public static void instancesAdded() {
+        instanceVersion.incrementAndGet();
     }
     
     /**
@@ -24,8 +149,8 @@ public class DatabaseManager {
     public static void initializeDatabase() {
         try {
             // Ensure database file directory exists
-            Files.createDirectories(Paths.get("happyheal.db").getParent() != null ? 
-                Paths.get("happyheal.db").getParent() : Paths.get("."));
+            Path parent = databasePath.toAbsolutePath().getParent();
+            Files.createDirectories(parent != null ? parent : Paths.get("."));
             
             try (Connection conn = getConnection()) {
                 createTables(conn);
@@ -41,8 +166,7 @@ public class DatabaseManager {
     private static void createTables(Connection conn) throws SQLException {
         Statement stmt = conn.createStatement();
         
-        // Enable foreign keys
-        stmt.execute("PRAGMA foreign_keys = ON");
+        // Foreign keys, WAL and busy handling are configured on every pooled connection
         
         // Create Users table
         stmt.execute("""
@@ -57,7 +181,8 @@ public class DatabaseManager {
         stmt.execute("""
             CREATE TABLE IF NOT EXISTS workflows (
                 id TEXT PRIMARY KEY,
-                name TEXT NOT NULL
+                name TEXT NOT NULL,
+                content_hash INTEGER
             )
         """);
         
@@ -94,6 +219,7 @@ public class DatabaseManager {
                 name TEXT NOT NULL,
                 workflow_id TEXT,
                 parent_id TEXT,
+                content_hash INTEGER,
                 FOREIGN KEY (workflow_id) REFERENCES workflows (id),
                 FOREIGN KEY (parent_id) REFERENCES product_groups (id)
             )
@@ -106,6 +232,7 @@ public class DatabaseManager {
                 name TEXT NOT NULL,
                 product_number TEXT NOT NULL,
                 group_id TEXT NOT NULL,
+                content_hash INTEGER,
                 FOREIGN KEY (group_id) REFERENCES product_groups (id)
             )
         """);
@@ -120,25 +247,347 @@ public class DatabaseManager {
                 customer_name TEXT,
                 current_state_id TEXT,
                 purchase_date DATETIME DEFAULT CURRENT_TIMESTAMP,
+                content_hash INTEGER,
                 FOREIGN KEY (product_id) REFERENCES products (id),
                 FOREIGN KEY (current_state_id) REFERENCES workflow_states (id)
             )
         """);
         
+        // Side effects of transitions waiting for delivery, written with the state change
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS transition_outbox (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                idempotency_key TEXT NOT NULL UNIQUE,
+                instance_id INTEGER NOT NULL,
+                transition_id INTEGER NOT NULL,
+                action_type TEXT,
+                setup_json TEXT,
+                variables_json TEXT NOT NULL,
+                status TEXT NOT NULL DEFAULT 'pending',
+                attempts INTEGER NOT NULL DEFAULT 0,
+                next_attempt_at INTEGER NOT NULL,
+                last_error TEXT,
+                created_at DATETIME DEFAULT CURRENT_TIMESTAMP
+            )
+        """);
+        
+        // Resume position of an interrupted streaming import, committed with each chunk
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS import_progress (
+                id INTEGER PRIMARY KEY CHECK (id = 1),
+                file_name TEXT NOT NULL,
+                file_size INTEGER NOT NULL,
+                file_modified INTEGER NOT NULL,
+                records INTEGER NOT NULL
+            )
+        """);
+        
+        // Content hashes used by the delta sync, for databases created before it existed
+        addColumnIfMissing(conn, "workflows", "content_hash", "INTEGER");
+        addColumnIfMissing(conn, "product_groups", "content_hash", "INTEGER");
+        addColumnIfMissing(conn, "products", "content_hash", "INTEGER");
+        addColumnIfMissing(conn, "product_instances", "content_hash", "INTEGER");
+        
+        // Outbox rows snapshot their action, for databases created before they did
+        addColumnIfMissing(conn, "transition_outbox", "action_type", "TEXT");
+        addColumnIfMissing(conn, "transition_outbox", "setup_json", "TEXT");
+        
         // Create indexes for better performance
         stmt.execute("CREATE INDEX IF NOT EXISTS idx_product_instances_serial ON product_instances(serial_number)");
         stmt.execute("CREATE INDEX IF NOT EXISTS idx_product_instances_customer ON product_instances(customer_mail)");
         stmt.execute("CREATE INDEX IF NOT EXISTS idx_product_instances_state ON product_instances(current_state_id)");
         stmt.execute("CREATE INDEX IF NOT EXISTS idx_product_groups_parent ON product_groups(parent_id)");
+        // Cover the group -> product -> instance state joins of the group rollups
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_products_group ON products(group_id, id)");
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_product_instances_product_state ON product_instances(product_id, current_state_id)");
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_transition_outbox_due ON transition_outbox(status, next_attempt_at)");
+        
+        createSearchTables(conn);
+        createGroupClosure(conn);
+        createGroupWorkflows(conn);
         
         stmt.close();
     }
     
+    /**
+     * Creates {@code product_group_closure}, which holds one row per group and each of its
+     * ancestors (and itself at depth 0), and the triggers that maintain it. Fills it from
+     * {@code parent_id} when the table is new.
+     */
+    private static void createGroupClosure(Connection conn) throws SQLException {
+        boolean exists;
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT 1 FROM sqlite_master WHERE name = 'product_group_closure'")) {
+            exists = rs.next();
+        }
+        
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("""
+                CREATE TABLE IF NOT EXISTS product_group_closure (
+                    ancestor_id TEXT NOT NULL,
+                    descendant_id TEXT NOT NULL,
+                    depth INTEGER NOT NULL,
+                    PRIMARY KEY (ancestor_id, descendant_id)
+                ) WITHOUT ROWID
+            """);
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_product_group_closure_descendant ON product_group_closure(descendant_id, ancestor_id)");
+            
+            // Groups are written parent first, so the parent's ancestors are already there
+            stmt.execute("""
+                CREATE TRIGGER IF NOT EXISTS product_groups_closure_insert AFTER INSERT ON product_groups BEGIN
+                    INSERT INTO product_group_closure (ancestor_id, descendant_id, depth) VALUES (new.id, new.id, 0);
+                    INSERT INTO product_group_closure (ancestor_id, descendant_id, depth)
+                    SELECT ancestor_id, new.id, depth + 1 FROM product_group_closure WHERE descendant_id = new.parent_id;
+                END
+            """);
+            stmt.execute("""
+                CREATE TRIGGER IF NOT EXISTS product_groups_closure_delete AFTER DELETE ON product_groups BEGIN
+                    DELETE FROM product_group_closure WHERE descendant_id = old.id;
+                    DELETE FROM product_group_closure WHERE ancestor_id = old.id;
+                END
+            """);
+            // Moving a group moves its subtree: unlink it from the old ancestors, link it to the new ones
+            stmt.execute("""
+                CREATE TRIGGER IF NOT EXISTS product_groups_closure_move
+                AFTER UPDATE OF parent_id ON product_groups WHEN old.parent_id IS NOT new.parent_id BEGIN
+                    SELECT RAISE(ABORT, 'A product group cannot be moved below itself')
+                    WHERE EXISTS (SELECT 1 FROM product_group_closure WHERE ancestor_id = new.id AND descendant_id = new.parent_id);
+                    DELETE FROM product_group_closure
+                    WHERE descendant_id IN (SELECT descendant_id FROM product_group_closure WHERE ancestor_id = new.id)
+                      AND ancestor_id NOT IN (SELECT descendant_id FROM product_group_closure WHERE ancestor_id = new.id);
+                    INSERT INTO product_group_closure (ancestor_id, descendant_id, depth)
+                    SELECT a.ancestor_id, d.descendant_id, a.depth + d.depth + 1
+                    FROM product_group_closure a, product_group_closure d
+                    WHERE a.descendant_id = new.parent_id AND d.ancestor_id = new.id;
+                END
+            """);
+            
+            if (!exists) {
+                // Databases created before the closure table existed
+                stmt.execute("""
+                    INSERT INTO product_group_closure (ancestor_id, descendant_id, depth)
+                    WITH RECURSIVE tree (ancestor_id, descendant_id, depth) AS (
+                        SELECT id, id, 0 FROM product_groups
+                        UNION ALL
+                        SELECT tree.ancestor_id, g.id, tree.depth + 1
+                        FROM tree JOIN product_groups g ON g.parent_id = tree.descendant_id
+                    )
+                    SELECT ancestor_id, descendant_id, depth FROM tree
+                """);
+            }
+        }
+    }
+    
+    /**
+     * Creates {@code product_group_workflows}, the effective workflow of every product group:
+     * its own workflow, or else the one of its nearest ancestor that has one. Triggers keep it
+     * current when groups are added, moved or change their workflow. Fills it from the closure
+     * when the table is new, and gives instances that were imported without a state because
+     * their group inherits its workflow the initial state of that workflow.
+     */
+    private static void createGroupWorkflows(Connection conn) throws SQLException {
+        boolean exists;
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT 1 FROM sqlite_master WHERE name = 'product_group_workflows'")) {
+            exists = rs.next();
+        }
+        
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("""
+                CREATE TABLE IF NOT EXISTS product_group_workflows (
+                    group_id TEXT PRIMARY KEY,
+                    workflow_id TEXT
+                ) WITHOUT ROWID
+            """);
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_product_group_workflows_workflow ON product_group_workflows(workflow_id, group_id)");
+            
+            // Groups are written parent first, so the parent's effective workflow is already there
+            stmt.execute("""
+                CREATE TRIGGER IF NOT EXISTS product_groups_workflow_insert AFTER INSERT ON product_groups BEGIN
+                    INSERT INTO product_group_workflows (group_id, workflow_id)
+                    VALUES (new.id, COALESCE(new.workflow_id,
+                        (SELECT workflow_id FROM product_group_workflows WHERE group_id = new.parent_id)));
+                END
+            """);
+            stmt.execute("""
+                CREATE TRIGGER IF NOT EXISTS product_groups_workflow_delete AFTER DELETE ON product_groups BEGIN
+                    DELETE FROM product_group_workflows WHERE group_id = old.id;
+                END
+            """);
+            // Resolves the subtree from its own rows of the closure, which a move leaves as they are,
+            // so this works whether it runs before or after the closure trigger
+            stmt.execute("""
+                CREATE TRIGGER IF NOT EXISTS product_groups_workflow_update
+                AFTER UPDATE OF workflow_id, parent_id ON product_groups
+                WHEN old.workflow_id IS NOT new.workflow_id OR old.parent_id IS NOT new.parent_id BEGIN
+                    UPDATE product_group_workflows SET workflow_id = COALESCE(
+                        (SELECT g.workflow_id
+                         FROM product_group_closure s
+                         JOIN product_group_closure c ON c.ancestor_id = s.descendant_id
+                         JOIN product_groups g ON g.id = c.ancestor_id
+                         WHERE s.ancestor_id = new.id AND c.descendant_id = product_group_workflows.group_id
+                           AND g.workflow_id IS NOT NULL
+                         ORDER BY c.depth LIMIT 1),
+                        (SELECT workflow_id FROM product_group_workflows WHERE group_id = new.parent_id))
+                    WHERE group_id IN (SELECT descendant_id FROM product_group_closure WHERE ancestor_id = new.id);
+                END
+            """);
+            
+            if (!exists) {
+                stmt.execute("""
+                    INSERT INTO product_group_workflows (group_id, workflow_id)
+                    SELECT g.id, (SELECT a.workflow_id
+                                  FROM product_group_closure c JOIN product_groups a ON a.id = c.ancestor_id
+                                  WHERE c.descendant_id = g.id AND a.workflow_id IS NOT NULL
+                                  ORDER BY c.depth LIMIT 1)
+                    FROM product_groups g
+                """);
+                // The initial state is the first state of the workflow, as the importers store them in order
+                int repaired = stmt.executeUpdate("""
+                    UPDATE product_instances SET current_state_id = (
+                        SELECT ws.id FROM products p
+                        JOIN product_group_workflows w ON w.group_id = p.group_id
+                        JOIN workflow_states ws ON ws.workflow_id = w.workflow_id
+                        WHERE p.id = product_instances.product_id
+                        ORDER BY ws.rowid LIMIT 1)
+                    WHERE current_state_id IS NULL AND product_id IN (
+                        SELECT p.id FROM products p
+                        JOIN product_group_workflows w ON w.group_id = p.group_id
+                        WHERE w.workflow_id IS NOT NULL)
+                """);
+                if (repaired > 0) {
+                    System.out.println("Set the initial state of " + repaired + " instances in groups with an inherited workflow.");
+                }
+            }
+        }
+    }
+    
+    /**
+     * Creates the FTS5 tables used by {@link CatalogSearch} and the triggers that keep them in
+     * sync, and indexes existing rows when the tables are new.
+     */
+    private static void createSearchTables(Connection conn) throws SQLException {
+        boolean exists;
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT 1 FROM sqlite_master WHERE name = 'instance_search'")) {
+            exists = rs.next();
+        }
+        boolean keysExist;
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT 1 FROM sqlite_master WHERE name = 'product_search_keys'")) {
+            keysExist = rs.next();
+        }
+        
+        try (Statement stmt = conn.createStatement()) {
+            // Instances are indexed in place (external content), keyed by their integer id
+            stmt.execute("""
+                CREATE VIRTUAL TABLE IF NOT EXISTS instance_search USING fts5(
+                    serial_number, customer_mail, customer_name,
+                    content = 'product_instances', content_rowid = 'id',
+                    tokenize = 'unicode61 remove_diacritics 2', prefix = '2 3'
+                )
+            """);
+            stmt.execute("""
+                CREATE TRIGGER IF NOT EXISTS product_instances_search_insert AFTER INSERT ON product_instances BEGIN
+                    INSERT INTO instance_search (rowid, serial_number, customer_mail, customer_name)
+                    VALUES (new.id, new.serial_number, new.customer_mail, new.customer_name);
+                END
+            """);
+            stmt.execute("""
+                CREATE TRIGGER IF NOT EXISTS product_instances_search_delete AFTER DELETE ON product_instances BEGIN
+                    INSERT INTO instance_search (instance_search, rowid, serial_number, customer_mail, customer_name)
+                    VALUES ('delete', old.id, old.serial_number, old.customer_mail, old.customer_name);
+                END
+            """);
+            // Only fires for the searched columns, so state changes by transitions cost nothing
+            stmt.execute("""
+                CREATE TRIGGER IF NOT EXISTS product_instances_search_update
+                AFTER UPDATE OF serial_number, customer_mail, customer_name ON product_instances BEGIN
+                    INSERT INTO instance_search (instance_search, rowid, serial_number, customer_mail, customer_name)
+                    VALUES ('delete', old.id, old.serial_number, old.customer_mail, old.customer_name);
+                    INSERT INTO instance_search (rowid, serial_number, customer_mail, customer_name)
+                    VALUES (new.id, new.serial_number, new.customer_mail, new.customer_name);
+                END
+            """);
+            
+            // Products have text ids whose rowids VACUUM may change, so they keep their own copy,
+            // keyed by a stable integer from product_search_keys so the triggers can find it by rowid
+            stmt.execute("""
+                CREATE VIRTUAL TABLE IF NOT EXISTS product_search USING fts5(
+                    product_id UNINDEXED, name, product_number,
+                    tokenize = 'unicode61 remove_diacritics 2', prefix = '2 3'
+                )
+            """);
+            stmt.execute("""
+                CREATE TABLE IF NOT EXISTS product_search_keys (
+                    search_rowid INTEGER PRIMARY KEY,
+                    product_id TEXT NOT NULL UNIQUE
+                )
+            """);
+            if (!keysExist) {
+                // Databases whose triggers searched product_search by the unindexed product id
+                stmt.execute("DROP TRIGGER IF EXISTS products_search_insert");
+                stmt.execute("DROP TRIGGER IF EXISTS products_search_delete");
+                stmt.execute("DROP TRIGGER IF EXISTS products_search_update");
+            }
+            stmt.execute("""
+                CREATE TRIGGER IF NOT EXISTS products_search_insert AFTER INSERT ON products BEGIN
+                    INSERT INTO product_search_keys (product_id) VALUES (new.id);
+                    INSERT INTO product_search (rowid, product_id, name, product_number)
+                    VALUES ((SELECT search_rowid FROM product_search_keys WHERE product_id = new.id),
+                            new.id, new.name, new.product_number);
+                END
+            """);
+            stmt.execute("""
+                CREATE TRIGGER IF NOT EXISTS products_search_delete AFTER DELETE ON products BEGIN
+                    DELETE FROM product_search
+                    WHERE rowid = (SELECT search_rowid FROM product_search_keys WHERE product_id = old.id);
+                    DELETE FROM product_search_keys WHERE product_id = old.id;
+                END
+            """);
+            stmt.execute("""
+                CREATE TRIGGER IF NOT EXISTS products_search_update AFTER UPDATE OF id, name, product_number ON products BEGIN
+                    UPDATE product_search SET product_id = new.id, name = new.name, product_number = new.product_number
+                    WHERE rowid = (SELECT search_rowid FROM product_search_keys WHERE product_id = old.id);
+                    UPDATE product_search_keys SET product_id = new.id WHERE product_id = old.id;
+                END
+            """);
+            
+            if (!exists) {
+                // Databases created before the search tables existed
+                stmt.execute("INSERT INTO instance_search (instance_search) VALUES ('rebuild')");
+            }
+            if (!keysExist) {
+                stmt.execute("DELETE FROM product_search");
+                stmt.execute("INSERT INTO product_search_keys (product_id) SELECT id FROM products");
+                stmt.execute("""
+                    INSERT INTO product_search (rowid, product_id, name, product_number)
+                    SELECT k.search_rowid, p.id, p.name, p.product_number
+                    FROM products p JOIN product_search_keys k ON k.product_id = p.id
+                """);
+            }
+        }
+    }
+    
+    private static void addColumnIfMissing(Connection conn, String table, String column, String type) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + table + ")")) {
+            while (rs.next()) {
+                if (column.equalsIgnoreCase(rs.getString("name"))) {
+                    return;
+                }
+            }
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("ALTER TABLE " + table + " ADD COLUMN " + column + " " + type);
+        }
+    }
+    
     /**
      * Checks if the database is properly initialized.
      */
     public static boolean isDatabaseInitialized() {
-        try (Connection conn = getConnection()) {
+        try (Connection conn = getReadConnection()) {
             DatabaseMetaData metaData = conn.getMetaData();
             ResultSet tables = metaData.getTables(null, null, "users", null);
             return tables.next();
@@ -158,18 +607,24 @@ public class DatabaseManager {
             stmt.execute("PRAGMA foreign_keys = OFF");
             
             // Delete all data
+            stmt.execute("DELETE FROM transition_outbox");
             stmt.execute("DELETE FROM product_instances");
             stmt.execute("DELETE FROM products");
             stmt.execute("DELETE FROM product_groups");
+            stmt.execute("DELETE FROM product_group_closure");
+            stmt.execute("DELETE FROM product_group_workflows");
             stmt.execute("DELETE FROM workflow_transitions");
             stmt.execute("DELETE FROM workflow_states");
             stmt.execute("DELETE FROM workflows");
             stmt.execute("DELETE FROM users");
+            stmt.execute("DELETE FROM import_progress");
             
             // Re-enable foreign keys
             stmt.execute("PRAGMA foreign_keys = ON");
             
             stmt.close();
+            workflowsChanged();
+            catalogChanged();
             System.out.println("Database cleared successfully.");
         } catch (SQLException e) {
             System.err.println("Failed to clear database: " + e.getMessage());
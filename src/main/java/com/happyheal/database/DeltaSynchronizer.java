@@ -0,0 +1,325 @@
+package com.happyheal.database;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.happyheal.model.User;
+import com.happyheal.model.Workflow;
+import com.happyheal.model.WorkflowState;
+import com.happyheal.model.WorkflowTransition;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Applies an updated data.json to a populated database without wiping it.
+ *
+ * <p>Rows are matched by their stable ids (group, product and workflow {@code Id},
+ * instance {@code SerialNumber}, username). Rows whose content hash changed are
+ * updated, new rows are inserted and rows missing from the file are deleted.
+ * Existing instances keep their {@code current_state_id}; it is only reset to the
+ * initial state when it no longer belongs to the instance's workflow.</p>
+ *
+ * <p>The whole sync runs in one transaction, so readers keep seeing the previous
+ * catalogue until it commits. The product group tree is streamed like in
+ * {@link StreamingDataImporter}, so memory use does not depend on file size.</p>
+ */
+public class DeltaSynchronizer {
+
+    /**
+     * Summary of what a sync changed.
+     */
+    public record SyncResult(long changedRows, long changedWorkflows, long deletedInstances, long deletedProducts,
+                             long deletedGroups, long deletedWorkflows, long resetStates) {}
+
+    private DeltaSynchronizer() {}
+
+    /**
+     * Synchronizes the database with the given data file.
+     */
+    public static SyncResult synchronize(Path jsonFile) throws IOException, SQLException {
+        ImportPhaseEvent phase = ImportPhaseEvent.begin("header");
+        CatalogTreeParser.Header header = CatalogTreeParser.readHeader(jsonFile);
+        phase.finish(header.users().size() + header.workflows().size());
+        Map<String, String> initialStates = DataImporter.resolveInitialStates(header.workflows());
+
+        try (Connection conn = DatabaseManager.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                phase = ImportPhaseEvent.begin("syncWorkflowsAndUsers");
+                syncUsers(conn, header.users());
+                long changedWorkflows = syncWorkflows(conn, header.workflows(), initialStates);
+                phase.finish(changedWorkflows);
+
+                phase = ImportPhaseEvent.begin("syncProductGroupTree");
+                long changedRows;
+                try (JsonParser parser = CatalogTreeParser.createParser(jsonFile);
+                     CatalogWriter writer = new CatalogWriter(conn, CatalogWriter.DEFAULT_BATCH_SIZE, CatalogWriter.Mode.UPSERT)) {
+                    CatalogTreeParser.parseTree(parser, writer, initialStates, CatalogTreeParser.WRITE_ALL);
+                    writer.flush();
+                    changedRows = writer.getChangedRows();
+                }
+                phase.finish(changedRows);
+
+                phase = ImportPhaseEvent.begin("syncDeletes");
+                SyncResult result;
+                try (Statement stmt = conn.createStatement()) {
+                    long deletedInstances = stmt.executeUpdate(
+                        "DELETE FROM product_instances WHERE serial_number NOT IN (SELECT serial_number FROM temp.sync_seen_instances)");
+                    long deletedProducts = stmt.executeUpdate(
+                        "DELETE FROM products WHERE id NOT IN (SELECT id FROM temp.sync_seen_products)");
+                    // Foreign keys are checked at the end of the statement, so removed subtrees go in one delete
+                    long deletedGroups = stmt.executeUpdate(
+                        "DELETE FROM product_groups WHERE id NOT IN (SELECT id FROM temp.sync_seen_groups)");
+
+                    long resetStates = resetInvalidStates(stmt);
+
+                    // Workflow rows no longer in the file, now that nothing references them
+                    stmt.executeUpdate(
+                        "DELETE FROM workflow_transitions WHERE workflow_id NOT IN (SELECT id FROM temp.sync_seen_workflows)");
+                    stmt.executeUpdate(
+                        "DELETE FROM workflow_states WHERE id NOT IN (SELECT id FROM temp.sync_seen_states)");
+                    long deletedWorkflows = stmt.executeUpdate(
+                        "DELETE FROM workflows WHERE id NOT IN (SELECT id FROM temp.sync_seen_workflows)");
+
+                    result = new SyncResult(changedRows, changedWorkflows, deletedInstances, deletedProducts,
+                        deletedGroups, deletedWorkflows, resetStates);
+                }
+                phase.finish(result.deletedInstances() + result.deletedProducts() + result.deletedGroups()
+                    + result.deletedWorkflows() + result.resetStates());
+
+                phase = ImportPhaseEvent.begin("commit");
+                conn.commit();
+                phase.finish(changedRows);
+                DatabaseManager.workflowsChanged();
+                DatabaseManager.catalogChanged();
+                System.out.println("Delta sync completed: " + result);
+                return result;
+            } catch (SQLException | IOException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+                dropTempTables(conn);
+            }
+        }
+    }
+
+    private static void syncUsers(Connection conn, List<User> users) throws SQLException {
+        String sql = """
+            INSERT INTO users (username, password, display_name) VALUES (?, ?, ?)
+            ON CONFLICT (username) DO UPDATE SET password = excluded.password, display_name = excluded.display_name
+            WHERE users.password IS NOT excluded.password OR users.display_name IS NOT excluded.display_name
+        """;
+        Set<String> usernames = new HashSet<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (User user : users) {
+                usernames.add(user.getUsername());
+                pstmt.setString(1, user.getUsername());
+                pstmt.setString(2, user.getPassword());
+                pstmt.setString(3, user.getDisplayName());
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+
+        List<String> removed = new ArrayList<>();
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("SELECT username FROM users")) {
+            while (rs.next()) {
+                if (!usernames.contains(rs.getString(1))) {
+                    removed.add(rs.getString(1));
+                }
+            }
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement("DELETE FROM users WHERE username = ?")) {
+            for (String username : removed) {
+                pstmt.setString(1, username);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    /**
+     * Inserts new workflows and rewrites changed ones. States are upserted by id so instances
+     * referencing them stay valid; transitions are matched as described in {@link #syncTransitions}.
+     *
+     * @return The number of new or changed workflows
+     */
+    private static long syncWorkflows(Connection conn, List<Workflow> workflows, Map<String, String> initialStates) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TEMP TABLE IF NOT EXISTS sync_seen_workflows (id TEXT PRIMARY KEY)");
+            stmt.execute("CREATE TEMP TABLE IF NOT EXISTS sync_seen_states (id TEXT PRIMARY KEY)");
+            stmt.execute("CREATE TEMP TABLE IF NOT EXISTS sync_initial_states (workflow_id TEXT PRIMARY KEY, state_id TEXT)");
+            stmt.execute("DELETE FROM temp.sync_seen_workflows");
+            stmt.execute("DELETE FROM temp.sync_seen_states");
+            stmt.execute("DELETE FROM temp.sync_initial_states");
+        }
+
+        try (PreparedStatement pstmt = conn.prepareStatement("INSERT INTO temp.sync_initial_states (workflow_id, state_id) VALUES (?, ?)")) {
+            for (Map.Entry<String, String> entry : initialStates.entrySet()) {
+                pstmt.setString(1, entry.getKey());
+                pstmt.setString(2, entry.getValue());
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+
+        Map<String, Long> existingHashes = new HashMap<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id, content_hash FROM workflows")) {
+            while (rs.next()) {
+                existingHashes.put(rs.getString(1), rs.getObject(2) != null ? rs.getLong(2) : null);
+            }
+        }
+
+        List<Workflow> changed = new ArrayList<>();
+        try (PreparedStatement seenWorkflow = conn.prepareStatement("INSERT OR IGNORE INTO temp.sync_seen_workflows (id) VALUES (?)");
+             PreparedStatement seenState = conn.prepareStatement("INSERT OR IGNORE INTO temp.sync_seen_states (id) VALUES (?)");
+             PreparedStatement upsertWorkflow = conn.prepareStatement("""
+                 INSERT INTO workflows (id, name, content_hash) VALUES (?, ?, ?)
+                 ON CONFLICT (id) DO UPDATE SET name = excluded.name, content_hash = excluded.content_hash
+             """);
+             PreparedStatement upsertState = conn.prepareStatement("""
+                 INSERT INTO workflow_states (id, workflow_id, title, color) VALUES (?, ?, ?, ?)
+                 ON CONFLICT (id) DO UPDATE SET workflow_id = excluded.workflow_id, title = excluded.title, color = excluded.color
+             """)) {
+
+            for (Workflow workflow : workflows) {
+                seenWorkflow.setString(1, workflow.getId());
+                seenWorkflow.addBatch();
+                for (WorkflowState state : workflow.getStates()) {
+                    seenState.setString(1, state.getId());
+                    seenState.addBatch();
+                }
+
+                long hash = DataImporter.workflowHash(workflow);
+                Long existingHash = existingHashes.get(workflow.getId());
+                if (existingHash != null && existingHash == hash) {
+                    continue;
+                }
+                changed.add(workflow);
+
+                upsertWorkflow.setString(1, workflow.getId());
+                upsertWorkflow.setString(2, workflow.getName());
+                upsertWorkflow.setLong(3, hash);
+                upsertWorkflow.addBatch();
+
+                for (WorkflowState state : workflow.getStates()) {
+                    upsertState.setString(1, state.getId());
+                    upsertState.setString(2, workflow.getId());
+                    upsertState.setString(3, state.getTitle());
+                    upsertState.setString(4, state.getColor());
+                    upsertState.addBatch();
+                }
+            }
+
+            seenWorkflow.executeBatch();
+            seenState.executeBatch();
+            upsertWorkflow.executeBatch();
+            upsertState.executeBatch();
+        }
+
+        syncTransitions(conn, changed);
+        return changed.size();
+    }
+
+    /**
+     * Updates the transitions of changed workflows in place, so their ids stay valid for the
+     * outbox and anything else holding them. A transition is matched by its workflow, type,
+     * from and to state; duplicates of that key are matched in file order. Unmatched
+     * transitions are inserted and existing ones missing from the file are deleted.
+     */
+    private static void syncTransitions(Connection conn, List<Workflow> workflows) throws SQLException {
+        try (PreparedStatement select = conn.prepareStatement(
+                 "SELECT id, type, from_state, to_state FROM workflow_transitions WHERE workflow_id = ? ORDER BY id");
+             PreparedStatement update = conn.prepareStatement("UPDATE workflow_transitions SET setup_json = ? WHERE id = ?");
+             PreparedStatement insert = conn.prepareStatement(
+                 "INSERT INTO workflow_transitions (workflow_id, type, from_state, to_state, setup_json) VALUES (?, ?, ?, ?, ?)");
+             PreparedStatement delete = conn.prepareStatement("DELETE FROM workflow_transitions WHERE id = ?")) {
+
+            for (Workflow workflow : workflows) {
+                Map<List<String>, ArrayDeque<Long>> existing = new HashMap<>();
+                select.setString(1, workflow.getId());
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        existing.computeIfAbsent(List.of(rs.getString(2), rs.getString(3), rs.getString(4)), k -> new ArrayDeque<>())
+                            .add(rs.getLong(1));
+                    }
+                }
+
+                for (WorkflowTransition transition : workflow.getTransitions()) {
+                    ArrayDeque<Long> ids = existing.get(List.of(transition.getType(), transition.getFrom(), transition.getTo()));
+                    Long id = ids != null ? ids.poll() : null;
+                    if (id != null) {
+                        update.setString(1, DataImporter.toSetupJson(transition));
+                        update.setLong(2, id);
+                        update.addBatch();
+                    } else {
+                        insert.setString(1, workflow.getId());
+                        insert.setString(2, transition.getType());
+                        insert.setString(3, transition.getFrom());
+                        insert.setString(4, transition.getTo());
+                        insert.setString(5, DataImporter.toSetupJson(transition));
+                        insert.addBatch();
+                    }
+                }
+
+                for (ArrayDeque<Long> ids : existing.values()) {
+                    for (Long id : ids) {
+                        delete.setLong(1, id);
+                        delete.addBatch();
+                    }
+                }
+            }
+
+            update.executeBatch();
+            insert.executeBatch();
+            delete.executeBatch();
+        }
+    }
+
+    /**
+     * Moves instances whose state is gone or belongs to another workflow to the initial
+     * state of their group's effective workflow. Valid states are left untouched.
+     */
+    private static long resetInvalidStates(Statement stmt) throws SQLException {
+        return stmt.executeUpdate("""
+            UPDATE product_instances SET current_state_id = r.initial_state
+            FROM (
+                SELECT p.id AS product_id, w.workflow_id AS workflow_id, i.state_id AS initial_state
+                FROM products p
+                JOIN product_group_workflows w ON w.group_id = p.group_id
+                LEFT JOIN temp.sync_initial_states i ON i.workflow_id = w.workflow_id
+            ) r
+            WHERE r.product_id = product_instances.product_id
+              AND product_instances.current_state_id IS NOT r.initial_state
+              AND (product_instances.current_state_id IS NULL
+                   OR NOT EXISTS (
+                       SELECT 1 FROM workflow_states ws
+                       JOIN temp.sync_seen_states s ON s.id = ws.id
+                       WHERE ws.id = product_instances.current_state_id AND ws.workflow_id IS r.workflow_id))
+        """);
+    }
+
+    private static void dropTempTables(Connection conn) {
+        try (Statement stmt = conn.createStatement()) {
+            for (String table : new String[]{"sync_seen_groups", "sync_seen_products", "sync_seen_instances",
+                                             "sync_seen_workflows", "sync_seen_states", "sync_initial_states"}) {
+                stmt.execute("DROP TABLE IF EXISTS temp." + table);
+            }
+        } catch (SQLException e) {
+            System.err.println("Failed to drop sync tables: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.happyheal.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Instance counts per workflow state for product group subtrees.
+ *
+ * <p>Subtrees are resolved through {@code product_group_closure}, so a group's rollup is one
+ * indexed join however deep the tree is, instead of a recursive walk.</p>
+ */
+public final class GroupRollup {
+
+    /**
+     * Instances in one workflow state.
+     *
+     * @param stateId The state, or null for instances without a state
+     * @param stateTitle The state's title, or null
+     */
+    public record StateCount(String stateId, String stateTitle, long instances) {}
+
+    /**
+     * The rollup of one group's subtree.
+     *
+     * @param depth Depth of the group in the tree; root groups have depth 0
+     * @param workflowName Name of the group's effective workflow, own or inherited, or null
+     */
+    public record GroupCounts(String groupId, String groupName, int depth, String workflowName, List<StateCount> states) {
+
+        public long totalInstances() {
+            long total = 0;
+            for (StateCount state : states) {
+                total += state.instances();
+            }
+            return total;
+        }
+    }
+
+    private GroupRollup() {}
+
+    /**
+     * Counts the instances in a group and all its subgroups, per state.
+     *
+     * @return The counts ordered by state title; empty for an unknown group
+     */
+    public static List<StateCount> countByState(String groupId) throws SQLException {
+        String sql = """
+            SELECT pi.current_state_id, ws.title, COUNT(*) AS instances
+            FROM product_group_closure c
+            JOIN products p ON p.group_id = c.descendant_id
+            JOIN product_instances pi ON pi.product_id = p.id
+            LEFT JOIN workflow_states ws ON ws.id = pi.current_state_id
+            WHERE c.ancestor_id = ?
+            GROUP BY pi.current_state_id
+            ORDER BY ws.title
+        """;
+        List<StateCount> counts = new ArrayList<>();
+        try (Connection conn = DatabaseManager.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, groupId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    counts.add(new StateCount(rs.getString(1), rs.getString(2), rs.getLong(3)));
+                }
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Counts the instances per state for the subtree of every group, in one query.
+     *
+     * @return The rollups in tree order (each group before its subgroups, siblings by name);
+     *         groups without instances have no states
+     */
+    public static List<GroupCounts> countByStateForAllGroups() throws SQLException {
+        Map<String, GroupCounts> groups = new LinkedHashMap<>();
+        try (Connection conn = DatabaseManager.getReadConnection();
+             Statement stmt = conn.createStatement()) {
+            // Tree order from the closure: sort by the names of all ancestors, root first
+            try (ResultSet rs = stmt.executeQuery("""
+                    SELECT g.id, g.name, (SELECT MAX(depth) FROM product_group_closure WHERE descendant_id = g.id) AS depth,
+                           wf.name AS workflow_name,
+                           (SELECT group_concat(name, char(31)) FROM (
+                               SELECT a.name FROM product_group_closure c JOIN product_groups a ON a.id = c.ancestor_id
+                               WHERE c.descendant_id = g.id ORDER BY c.depth DESC)) AS path
+                    FROM product_groups g
+                    LEFT JOIN product_group_workflows w ON w.group_id = g.id
+                    LEFT JOIN workflows wf ON wf.id = w.workflow_id
+                    ORDER BY path
+                """)) {
+                while (rs.next()) {
+                    groups.put(rs.getString(1), new GroupCounts(rs.getString(1), rs.getString(2), rs.getInt(3), rs.getString(4), new ArrayList<>()));
+                }
+            }
+            try (ResultSet rs = stmt.executeQuery("""
+                    SELECT c.ancestor_id, pi.current_state_id, ws.title, COUNT(*) AS instances
+                    FROM product_group_closure c
+                    JOIN products p ON p.group_id = c.descendant_id
+                    JOIN product_instances pi ON pi.product_id = p.id
+                    LEFT JOIN workflow_states ws ON ws.id = pi.current_state_id
+                    GROUP BY c.ancestor_id, pi.current_state_id
+                    ORDER BY ws.title
+                """)) {
+                while (rs.next()) {
+                    GroupCounts group = groups.get(rs.getString(1));
+                    if (group != null) {
+                        group.states().add(new StateCount(rs.getString(2), rs.getString(3), rs.getLong(4)));
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(groups.values());
+    }
+}
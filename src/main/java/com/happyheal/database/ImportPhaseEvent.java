@@ -0,0 +1,46 @@
+package com.happyheal.database;
+
+import jdk.jfr.Category;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for one phase of a data import or delta sync.
+ */
+@Name("com.happyheal.ImportPhase")
+@Label("Import Phase")
+@Category({"HappyHeal", "Database"})
+@Enabled(false)
+@StackTrace(false)
+class ImportPhaseEvent extends Event {
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Records")
+    long records;
+
+    /**
+     * Starts timing a phase.
+     */
+    static ImportPhaseEvent begin(String phase) {
+        ImportPhaseEvent event = new ImportPhaseEvent();
+        event.phase = phase;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends the phase and commits the event if it is enabled and long enough.
+     */
+    void finish(long records) {
+        end();
+        if (shouldCommit()) {
+            this.records = records;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.happyheal.database;
+
+/**
+ * Receives progress updates from a streaming import.
+ */
+@FunctionalInterface
+public interface ImportProgressListener {
+    
+    /**
+     * Called after each committed chunk and once when the import has finished.
+     */
+    void onProgress(ImportProgress progress);
+    
+    /**
+     * Progress snapshot of a running import.
+     *
+     * @param bytesRead Bytes of the data file consumed so far
+     * @param totalBytes Size of the data file
+     * @param groups Product groups written so far
+     * @param products Products written so far
+     * @param instances Product instances written so far
+     * @param resumedRecords Records skipped because an earlier run had already committed them
+     * @param finished Whether the import has completed
+     */
+    record ImportProgress(long bytesRead, long totalBytes, long groups, long products, long instances,
+                          long resumedRecords, boolean finished) {
+        
+        public double percent() {
+            return totalBytes == 0 ? 100.0 : Math.min(100.0, bytesRead * 100.0 / totalBytes);
+        }
+    }
+    
+    /**
+     * Logs progress to standard out, like the rest of the importer.
+     */
+    static ImportProgressListener logging() {
+        return progress -> System.out.printf("Import %s: %.1f%% (%d groups, %d products, %d instances)%n",
+            progress.finished() ? "finished" : "progress", progress.percent(),
+            progress.groups(), progress.products(), progress.instances());
+    }
+}
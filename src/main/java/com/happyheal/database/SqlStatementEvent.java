@@ -0,0 +1,29 @@
+package com.happyheal.database;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for one execute call on a pooled connection's statement.
+ */
+@Name("com.happyheal.SqlStatement")
+@Label("SQL Statement")
+@Category({"HappyHeal", "Database"})
+@Enabled(false)
+class SqlStatementEvent extends Event {
+
+    @Label("SQL")
+    String sql;
+
+    @Label("Operation")
+    @Description("query, update or batch")
+    String operation;
+
+    @Label("Connection")
+    @Description("writer or reader")
+    String connection;
+}
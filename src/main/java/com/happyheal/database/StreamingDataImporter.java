@@ -0,0 +1,227 @@
+package com.happyheal.database;
+
+import com.fasterxml.jackson.core.JsonParser;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+
+/**
+ * Imports data.json files of any size with Jackson's streaming parser.
+ *
+ * <p>The file is read twice. The first pass collects the (small) Workflows and
+ * Users arrays and skips the product group tree. The second pass walks
+ * ProductGroupTree token by token and writes every group, product and instance
+ * as soon as it has been parsed, so memory use does not depend on file size.</p>
+ *
+ * <p>Rows are committed in chunks. Each chunk's transaction also stores how many
+ * tree records are safely stored in {@code import_progress}, so the resume position
+ * can never disagree with the committed rows; if the process dies, the next run
+ * skips those records and continues from there.</p>
+ */
+public class StreamingDataImporter {
+
+    private static final int COMMIT_INTERVAL = Integer.getInteger("happyheal.import.commitInterval", 50_000);
+
+    private final Path jsonFile;
+    private final ImportProgressListener listener;
+    private final long totalBytes;
+
+    private Map<String, String> initialStates;
+    private CatalogWriter writer;
+    private Connection conn;
+    private JsonParser parser;
+
+    // Tree records (groups, products, instances) seen in document order
+    private long recordIndex;
+    private long resumeFrom;
+    private long uncommittedRecords;
+
+    private StreamingDataImporter(Path jsonFile, ImportProgressListener listener) throws IOException {
+        this.jsonFile = jsonFile;
+        this.listener = listener;
+        this.totalBytes = Files.size(jsonFile);
+    }
+
+    /**
+     * Imports the given file, resuming from the stored position if an earlier run was interrupted.
+     *
+     * @param jsonFile The data file to import
+     * @param listener Receives progress after each committed chunk
+     */
+    public static void importFile(Path jsonFile, ImportProgressListener listener) throws IOException, SQLException {
+        new StreamingDataImporter(jsonFile, listener).run();
+    }
+
+    /**
+     * Returns whether the database holds the resume position of an interrupted streaming import.
+     * A checkpoint file left next to the data file by older versions is deleted; without the
+     * position in the database it cannot match the stored rows.
+     */
+    public static boolean hasCheckpoint(Path jsonFile) throws SQLException, IOException {
+        Files.deleteIfExists(jsonFile.resolveSibling(jsonFile.getFileName() + ".import-checkpoint"));
+        try (Connection conn = DatabaseManager.getReadConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT 1 FROM import_progress")) {
+            return rs.next();
+        }
+    }
+
+    private void run() throws IOException, SQLException {
+        try (Connection connection = DatabaseManager.getConnection()) {
+            conn = connection;
+            Long checkpoint = readCheckpoint();
+            boolean workflowsDone = checkpoint != null;
+            resumeFrom = checkpoint != null ? checkpoint : 0;
+            if (checkpoint != null) {
+                System.out.println("Resuming streaming import of " + jsonFile + " after " + resumeFrom + " records.");
+            }
+
+            conn.setAutoCommit(false);
+            try {
+                importWorkflowsAndUsers(!workflowsDone);
+                importProductGroupTree();
+            } catch (SQLException | IOException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+
+        reportProgress(true);
+    }
+
+    /**
+     * First pass: Workflows and Users, committed together before any tree data.
+     */
+    private void importWorkflowsAndUsers(boolean write) throws IOException, SQLException {
+        ImportPhaseEvent phase = ImportPhaseEvent.begin("header");
+        CatalogTreeParser.Header header = CatalogTreeParser.readHeader(jsonFile);
+        phase.finish(header.users().size() + header.workflows().size());
+
+        initialStates = DataImporter.resolveInitialStates(header.workflows());
+        if (write) {
+            phase = ImportPhaseEvent.begin("workflowsAndUsers");
+            DataImporter.importUsers(conn, header.users());
+            DataImporter.importWorkflows(conn, header.workflows());
+            storeProgress();
+            conn.commit();
+            DatabaseManager.workflowsChanged();
+            phase.finish(header.users().size() + header.workflows().size());
+        }
+    }
+
+    /**
+     * Second pass: walks ProductGroupTree and writes rows as they are parsed.
+     */
+    private void importProductGroupTree() throws IOException, SQLException {
+        try (JsonParser p = CatalogTreeParser.createParser(jsonFile);
+             CatalogWriter catalogWriter = new CatalogWriter(conn, CatalogWriter.DEFAULT_BATCH_SIZE)) {
+            parser = p;
+            writer = catalogWriter;
+            ImportPhaseEvent phase = ImportPhaseEvent.begin("productGroupTree");
+
+            CatalogTreeParser.parseTree(p, catalogWriter, initialStates, new CatalogTreeParser.RecordHook() {
+                @Override
+                public boolean beforeRecord() {
+                    return nextRecord();
+                }
+
+                @Override
+                public void afterRecord() throws SQLException, IOException {
+                    recordWritten();
+                }
+            });
+
+            commitChunk(true);
+            phase.finish(recordIndex - Math.min(resumeFrom, recordIndex));
+        }
+    }
+
+    /**
+     * Advances the record counter and returns whether the record still has to be written.
+     */
+    private boolean nextRecord() {
+        return recordIndex++ >= resumeFrom;
+    }
+
+    private void recordWritten() throws SQLException, IOException {
+        if (++uncommittedRecords >= COMMIT_INTERVAL) {
+            commitChunk(false);
+        }
+    }
+
+    /**
+     * Commits the written rows together with the new resume position.
+     *
+     * @param last Whether the tree is complete; the resume position is then removed instead
+     */
+    private void commitChunk(boolean last) throws SQLException, IOException {
+        ImportPhaseEvent phase = ImportPhaseEvent.begin("commit");
+        writer.flush();
+        if (last) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("DELETE FROM import_progress");
+            }
+        } else {
+            storeProgress();
+        }
+        conn.commit();
+        DatabaseManager.instancesAdded();
+        phase.finish(uncommittedRecords);
+        uncommittedRecords = 0;
+        reportProgress(false);
+    }
+
+    private void reportProgress(boolean finished) {
+        if (listener == null) {
+            return;
+        }
+        long bytesRead = finished ? totalBytes : parser != null ? parser.currentLocation().getByteOffset() : 0;
+        long groups = writer != null ? writer.getGroupCount() : 0;
+        long products = writer != null ? writer.getProductCount() : 0;
+        long instances = writer != null ? writer.getInstanceCount() : 0;
+        listener.onProgress(new ImportProgressListener.ImportProgress(
+            bytesRead, totalBytes, groups, products, instances, Math.min(resumeFrom, recordIndex), finished));
+    }
+
+    /**
+     * Returns the number of tree records already stored, or null for a new import.
+     */
+    private Long readCheckpoint() throws IOException, SQLException {
+        long fileModified = Files.getLastModifiedTime(jsonFile).toMillis();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT file_size, file_modified, records FROM import_progress")) {
+            if (rs.next()) {
+                if (rs.getLong("file_size") != totalBytes || rs.getLong("file_modified") != fileModified) {
+                    throw new IOException("The interrupted import belongs to a different version of " + jsonFile
+                        + "; clear the database to start over");
+                }
+                return rs.getLong("records");
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Stores the resume position in the current transaction.
+     */
+    private void storeProgress() throws IOException, SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("""
+                INSERT OR REPLACE INTO import_progress (id, file_name, file_size, file_modified, records)
+                VALUES (1, ?, ?, ?, ?)""")) {
+            pstmt.setString(1, jsonFile.toString());
+            pstmt.setLong(2, totalBytes);
+            pstmt.setLong(3, Files.getLastModifiedTime(jsonFile).toMillis());
+            pstmt.setLong(4, Math.max(recordIndex, resumeFrom));
+            pstmt.executeUpdate();
+        }
+    }
+}
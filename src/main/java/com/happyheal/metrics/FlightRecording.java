@@ -0,0 +1,66 @@
+package com.happyheal.metrics;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Starts a Flight Recorder recording with the HappyHeal events when {@code happyheal.jfr.file}
+ * is set. The recording uses the JDK's {@code default} settings plus the
+ * {@code happyheal.jfc} profile shipped with the application, and is written to the file
+ * when the JVM exits.
+ */
+public final class FlightRecording {
+
+    private static final String SETTINGS_RESOURCE = "/happyheal.jfc";
+
+    private static Recording recording;
+
+    private FlightRecording() {}
+
+    /**
+     * Starts the recording if {@code happyheal.jfr.file} is set and it is not running yet.
+     */
+    public static synchronized void start() {
+        String file = System.getProperty("happyheal.jfr.file");
+        if (file == null || file.isBlank() || recording != null) {
+            return;
+        }
+        try {
+            Map<String, String> settings = new HashMap<>(Configuration.getConfiguration("default").getSettings());
+            settings.putAll(getSettings());
+            recording = new Recording(settings);
+            recording.setName("HappyHeal");
+            recording.setToDisk(true);
+            recording.setDestination(Path.of(file));
+            recording.setDumpOnExit(true);
+            recording.start();
+            System.out.println("Flight recording started, written to " + file + " on exit");
+        } catch (IOException | ParseException | RuntimeException e) {
+            System.err.println("Failed to start flight recording: " + e.getMessage());
+            recording = null;
+        }
+    }
+
+    /**
+     * The event settings of the shipped {@code happyheal.jfc} profile, e.g. to enable the
+     * events on a recording started elsewhere.
+     */
+    public static Map<String, String> getSettings() throws IOException, ParseException {
+        InputStream in = FlightRecording.class.getResourceAsStream(SETTINGS_RESOURCE);
+        if (in == null) {
+            throw new IOException("Missing " + SETTINGS_RESOURCE);
+        }
+        try (InputStreamReader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            return Configuration.create(reader).getSettings();
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.happyheal.metrics;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Application-wide counters, gauges and latency histograms.
+ *
+ * <p>Metrics are created once, usually into a static field, and then recorded without
+ * lookups or allocation. Each metric has a Prometheus-style name and optional label
+ * pairs. All metrics are published as attributes of the {@code com.happyheal:type=Metrics}
+ * MBean and, with {@code happyheal.metrics.port} set, as text from {@link MetricsServer}.</p>
+ */
+public final class MetricsRegistry {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+    private record Metric(String name, String labels, String help, Object value) {}
+
+    // A count kept by a component itself, read on export
+    private record FunctionCounter(LongSupplier value) {}
+
+    private static final Map<String, Metric> metrics = new ConcurrentHashMap<>();
+    private static final Map<String, String> helps = new ConcurrentHashMap<>();
+
+    private MetricsRegistry() {}
+
+    /**
+     * Returns the counter with the given name and labels, creating it on first use.
+     *
+     * @param labels Label names and values, alternating
+     */
+    public static Counter counter(String name, String help, String... labels) {
+        return (Counter) register(name, help, labels, Counter::new);
+    }
+
+    /**
+     * Returns the latency histogram with the given name and labels, creating it on first use.
+     * The name should end in {@code _seconds}; latencies are exported in seconds.
+     */
+    public static LatencyHistogram histogram(String name, String help, String... labels) {
+        return (LatencyHistogram) register(name, help, labels, LatencyHistogram::new);
+    }
+
+    /**
+     * Publishes an existing histogram, e.g. one kept by a component for its own statistics.
+     */
+    public static void register(String name, String help, LatencyHistogram histogram, String... labels) {
+        register(name, help, labels, () -> histogram);
+    }
+
+    /**
+     * Publishes a count that a component already keeps, read when the metrics are exported.
+     * Replaces an earlier counter with the same name and labels.
+     */
+    public static void counter(String name, String help, LongSupplier value, String... labels) {
+        String labelText = formatLabels(labels);
+        helps.putIfAbsent(name, help);
+        metrics.put(name + labelText, new Metric(name, labelText, help, new FunctionCounter(value)));
+    }
+
+    /**
+     * Publishes a value that is read when the metrics are exported. Replaces an earlier
+     * gauge with the same name and labels.
+     */
+    public static void gauge(String name, String help, DoubleSupplier value, String... labels) {
+        String labelText = formatLabels(labels);
+        helps.putIfAbsent(name, help);
+        metrics.put(name + labelText, new Metric(name, labelText, help, value));
+    }
+
+    private static Object register(String name, String help, String[] labels, Supplier<Object> factory) {
+        String labelText = formatLabels(labels);
+        helps.putIfAbsent(name, help);
+        Metric metric = metrics.computeIfAbsent(name + labelText, key -> new Metric(name, labelText, help, factory.get()));
+        return metric.value();
+    }
+
+    /**
+     * Current values by metric name and labels, e.g. {@code happyheal_transitions_total{type="http"}}.
+     * Histograms contribute their count, quantiles and maximum in seconds.
+     */
+    public static Map<String, Double> snapshot() {
+        Map<String, Double> values = new TreeMap<>();
+        for (Metric metric : metrics.values()) {
+            String key = metric.name() + metric.labels();
+            if (metric.value() instanceof Counter counter) {
+                values.put(key, (double) counter.get());
+            } else if (metric.value() instanceof FunctionCounter counter) {
+                values.put(key, readCounter(counter));
+            } else if (metric.value() instanceof DoubleSupplier gauge) {
+                values.put(key, readGauge(gauge));
+            } else if (metric.value() instanceof LatencyHistogram histogram) {
+                values.put(metric.name() + "_count" + metric.labels(), (double) histogram.getCount());
+                for (double quantile : QUANTILES) {
+                    values.put(metric.name() + "_p" + Math.round(quantile * 100) + metric.labels(),
+                        histogram.getPercentileMicros(quantile) / 1e6);
+                }
+                values.put(metric.name() + "_max" + metric.labels(), histogram.getMaxMicros() / 1e6);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Formats all metrics in the Prometheus text exposition format. Histograms are
+     * exported as summaries with 0.5, 0.9 and 0.99 quantiles.
+     */
+    public static String toPrometheusText() {
+        Map<String, Map<String, Metric>> byName = new TreeMap<>();
+        for (Metric metric : metrics.values()) {
+            byName.computeIfAbsent(metric.name(), name -> new TreeMap<>()).put(metric.labels(), metric);
+        }
+
+        StringBuilder text = new StringBuilder(byName.size() * 128);
+        for (Map.Entry<String, Map<String, Metric>> entry : byName.entrySet()) {
+            String name = entry.getKey();
+            Object first = entry.getValue().values().iterator().next().value();
+            String type = first instanceof Counter || first instanceof FunctionCounter ? "counter" : first instanceof LatencyHistogram ? "summary" : "gauge";
+            text.append("# HELP ").append(name).append(' ').append(helps.getOrDefault(name, name)).append('\n');
+            text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+            for (Metric metric : entry.getValue().values()) {
+                if (metric.value() instanceof Counter counter) {
+                    sample(text, name, metric.labels(), counter.get());
+                } else if (metric.value() instanceof FunctionCounter counter) {
+                    sample(text, name, metric.labels(), readCounter(counter));
+                } else if (metric.value() instanceof DoubleSupplier gauge) {
+                    sample(text, name, metric.labels(), readGauge(gauge));
+                } else if (metric.value() instanceof LatencyHistogram histogram) {
+                    for (double quantile : QUANTILES) {
+                        sample(text, name, withLabel(metric.labels(), "quantile", String.valueOf(quantile)),
+                            histogram.getPercentileMicros(quantile) / 1e6);
+                    }
+                    sample(text, name + "_sum", metric.labels(), histogram.getTotalMicros() / 1e6);
+                    sample(text, name + "_count", metric.labels(), histogram.getCount());
+                }
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Registers the {@code com.happyheal:type=Metrics} MBean; repeated calls do nothing.
+     */
+    public static void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(), new ObjectName("com.happyheal:type=Metrics"));
+        } catch (InstanceAlreadyExistsException e) {
+            // Registered before
+        } catch (JMException e) {
+            System.err.println("Failed to register metrics MBean: " + e.getMessage());
+        }
+    }
+
+    private static double readGauge(DoubleSupplier gauge) {
+        try {
+            return gauge.getAsDouble();
+        } catch (RuntimeException e) {
+            return Double.NaN;
+        }
+    }
+
+    private static double readCounter(FunctionCounter counter) {
+        try {
+            return counter.value().getAsLong();
+        } catch (RuntimeException e) {
+            return Double.NaN;
+        }
+    }
+
+    private static void sample(StringBuilder text, String name, String labels, double value) {
+        text.append(name).append(labels).append(' ');
+        if (value == Math.rint(value) && !Double.isInfinite(value) && Math.abs(value) < 1e15) {
+            text.append((long) value);
+        } else {
+            text.append(value);
+        }
+        text.append('\n');
+    }
+
+    private static String formatLabels(String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be name/value pairs");
+        }
+        String text = "";
+        for (int i = 0; i < labels.length; i += 2) {
+            text = withLabel(text, labels[i], labels[i + 1]);
+        }
+        return text;
+    }
+
+    private static String withLabel(String labels, String name, String value) {
+        String escaped = (value != null ? value : "").replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+        String label = name + "=\"" + escaped + "\"";
+        return labels.isEmpty() ? "{" + label + "}" : labels.substring(0, labels.length() - 1) + "," + label + "}";
+    }
+}
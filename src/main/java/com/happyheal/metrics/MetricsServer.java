@@ -0,0 +1,54 @@
+package com.happyheal.metrics;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serves the metrics in Prometheus text format on {@code http://127.0.0.1:<port>/metrics}.
+ * Only started when {@code happyheal.metrics.port} is set; it listens on loopback, so the
+ * metrics are not reachable from other machines.
+ */
+public final class MetricsServer {
+
+    private static HttpServer server;
+
+    private MetricsServer() {}
+
+    /**
+     * Starts the endpoint if {@code happyheal.metrics.port} is set and it is not running yet.
+     */
+    public static synchronized void start() {
+        Integer port = Integer.getInteger("happyheal.metrics.port");
+        if (port == null || server != null) {
+            return;
+        }
+        try {
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        } catch (IOException e) {
+            System.err.println("Failed to start metrics endpoint on port " + port + ": " + e.getMessage());
+            return;
+        }
+        server.createContext("/metrics", exchange -> {
+            byte[] body = MetricsRegistry.toPrometheusText().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        System.out.println("Metrics available at http://127.0.0.1:" + server.getAddress().getPort() + "/metrics");
+    }
+
+    public static synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+    }
+}
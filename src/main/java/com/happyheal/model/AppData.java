@@ -3,6 +3,8 @@ package com.happyheal.model;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Spliterator;
+import java.util.function.Consumer;
 
 /**
  * Root data model that represents the complete application data structure.
@@ -73,35 +75,81 @@ public class AppData {
     }
     
     /**
-     * Gets all products from all product groups.
+     * Calls the action for every product group, parents before their subgroups.
      */
-    public List<Product> getAllProducts() {
-        List<Product> allProducts = new ArrayList<>();
+    public void forEachProductGroup(Consumer<? super ProductGroup> action) {
+        for (ProductGroup group : productGroupTree) {
+            group.forEachGroup(action);
+        }
+    }
+    
+    /**
+     * Calls the action for every product, in tree order.
+     */
+    public void forEachProduct(Consumer<? super Product> action) {
+        for (ProductGroup group : productGroupTree) {
+            group.forEachProduct(action);
+        }
+    }
+    
+    /**
+     * Calls the action for every product instance, in tree order.
+     */
+    public void forEachInstance(Consumer<? super ProductInstance> action) {
         for (ProductGroup group : productGroupTree) {
-            allProducts.addAll(group.getAllProducts());
+            group.forEachInstance(action);
         }
+    }
+    
+    /**
+     * Spliterator over all product groups, e.g. for
+     * {@code StreamSupport.stream(appData.productGroupSpliterator(), true)}.
+     */
+    public Spliterator<ProductGroup> productGroupSpliterator() {
+        return new GroupTreeSpliterator<>(productGroupTree, GroupTreeSpliterator.Level.GROUPS);
+    }
+    
+    /**
+     * Spliterator over all products.
+     */
+    public Spliterator<Product> productSpliterator() {
+        return new GroupTreeSpliterator<>(productGroupTree, GroupTreeSpliterator.Level.PRODUCTS);
+    }
+    
+    /**
+     * Spliterator over all product instances.
+     */
+    public Spliterator<ProductInstance> instanceSpliterator() {
+        return new GroupTreeSpliterator<>(productGroupTree, GroupTreeSpliterator.Level.INSTANCES);
+    }
+    
+    /**
+     * Collects all products from all product groups into a new list.
+     * Use {@link #forEachProduct} when the list itself is not needed.
+     */
+    public List<Product> getAllProducts() {
+        List<Product> allProducts = new ArrayList<>();
+        forEachProduct(allProducts::add);
         return allProducts;
     }
     
     /**
-     * Gets all product groups from the tree structure.
+     * Collects all product groups of the tree into a new list.
+     * Use {@link #forEachProductGroup} when the list itself is not needed.
      */
     public List<ProductGroup> getAllProductGroups() {
         List<ProductGroup> allGroups = new ArrayList<>();
-        for (ProductGroup group : productGroupTree) {
-            allGroups.addAll(group.getAllGroups());
-        }
+        forEachProductGroup(allGroups::add);
         return allGroups;
     }
     
     /**
-     * Gets all product instances from all products.
+     * Collects all product instances into a new list.
+     * Use {@link #forEachInstance} when the list itself is not needed.
      */
     public List<ProductInstance> getAllProductInstances() {
         List<ProductInstance> allInstances = new ArrayList<>();
-        for (Product product : getAllProducts()) {
-            allInstances.addAll(product.getInstances());
-        }
+        forEachInstance(allInstances::add);
         return allInstances;
     }
     
@@ -0,0 +1,192 @@
+package com.happyheal.model;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Walks the groups, products or instances of a product group forest in pre-order: a group,
+ * then its products, then its subgroups. Iteration keeps its position in a stack that grows
+ * with the tree's depth, so nothing is allocated per group visited.
+ *
+ * <p>Splitting halves the remaining root groups; a single remaining group is split into its
+ * own products and its subgroups, so deep trees with one root still parallelize.</p>
+ */
+final class GroupTreeSpliterator<T> implements Spliterator<T> {
+
+    enum Level { GROUPS, PRODUCTS, INSTANCES }
+
+    private final Level level;
+    // Only the root's own products or instances, not its subgroups
+    private final boolean shallow;
+    private long estimate;
+
+    // Stack of sibling lists; the bottom one is the root range ending at rootEnd
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private List<ProductGroup>[] lists = new List[8];
+    private int[] indexes = new int[8];
+    private int depth;
+    private int rootEnd;
+
+    private List<Product> products;
+    private int productIndex;
+    private List<ProductInstance> instances;
+    private int instanceIndex;
+
+    GroupTreeSpliterator(List<ProductGroup> roots, Level level) {
+        this(roots, 0, roots.size(), level, false, Long.MAX_VALUE);
+    }
+
+    private GroupTreeSpliterator(List<ProductGroup> roots, int from, int to, Level level, boolean shallow, long estimate) {
+        this.level = level;
+        this.shallow = shallow;
+        this.estimate = estimate;
+        lists[0] = roots;
+        indexes[0] = from;
+        rootEnd = to;
+    }
+
+    private ProductGroup nextGroup() {
+        while (depth >= 0) {
+            List<ProductGroup> list = lists[depth];
+            int end = depth == 0 ? rootEnd : list.size();
+            if (indexes[depth] < end) {
+                ProductGroup group = list.get(indexes[depth]++);
+                if (!shallow && !group.getSubGroups().isEmpty()) {
+                    push(group.getSubGroups());
+                }
+                return group;
+            }
+            depth--;
+        }
+        return null;
+    }
+
+    private void push(List<ProductGroup> subGroups) {
+        if (++depth == lists.length) {
+            lists = Arrays.copyOf(lists, depth * 2);
+            indexes = Arrays.copyOf(indexes, depth * 2);
+        }
+        lists[depth] = subGroups;
+        indexes[depth] = 0;
+    }
+
+    private Product nextProduct() {
+        while (products == null || productIndex >= products.size()) {
+            ProductGroup group = nextGroup();
+            if (group == null) {
+                products = null;
+                return null;
+            }
+            products = group.getProducts();
+            productIndex = 0;
+        }
+        return products.get(productIndex++);
+    }
+
+    private ProductInstance nextInstance() {
+        while (instances == null || instanceIndex >= instances.size()) {
+            Product product = nextProduct();
+            if (product == null) {
+                instances = null;
+                return null;
+            }
+            instances = product.getInstances();
+            instanceIndex = 0;
+        }
+        return instances.get(instanceIndex++);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean tryAdvance(Consumer<? super T> action) {
+        Object next = switch (level) {
+            case GROUPS -> nextGroup();
+            case PRODUCTS -> nextProduct();
+            case INSTANCES -> nextInstance();
+        };
+        if (next == null) {
+            return false;
+        }
+        action.accept((T) next);
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEachRemaining(Consumer<? super T> action) {
+        if (!atRootLevel()) {
+            while (tryAdvance(action)) {
+                // advances until the end
+            }
+            return;
+        }
+        // Nothing started below the roots yet, so the remaining subtrees can be walked recursively
+        List<ProductGroup> roots = lists[0];
+        for (int i = indexes[0]; i < rootEnd; i++) {
+            ProductGroup group = roots.get(i);
+            if (shallow) {
+                switch (level) {
+                    case GROUPS -> action.accept((T) group);
+                    case PRODUCTS -> group.getProducts().forEach((Consumer<? super Product>) action);
+                    case INSTANCES -> {
+                        for (Product product : group.getProducts()) {
+                            product.getInstances().forEach((Consumer<? super ProductInstance>) action);
+                        }
+                    }
+                }
+            } else {
+                switch (level) {
+                    case GROUPS -> group.forEachGroup((Consumer<? super ProductGroup>) action);
+                    case PRODUCTS -> group.forEachProduct((Consumer<? super Product>) action);
+                    case INSTANCES -> group.forEachInstance((Consumer<? super ProductInstance>) action);
+                }
+            }
+        }
+        indexes[0] = rootEnd;
+        depth = -1;
+    }
+
+    private boolean atRootLevel() {
+        return depth == 0 && products == null && instances == null;
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+        if (!atRootLevel()) {
+            return null;
+        }
+        int from = indexes[0];
+        int remaining = rootEnd - from;
+        if (remaining >= 2) {
+            int mid = from + remaining / 2;
+            estimate >>>= 1;
+            indexes[0] = mid;
+            return new GroupTreeSpliterator<>(lists[0], from, mid, level, false, estimate);
+        }
+        if (remaining == 1 && !shallow) {
+            ProductGroup group = lists[0].get(from);
+            if (group.getSubGroups().isEmpty()) {
+                return null;
+            }
+            // The group's own items come first in pre-order, so they are the prefix
+            estimate >>>= 1;
+            lists[0] = group.getSubGroups();
+            indexes[0] = 0;
+            rootEnd = lists[0].size();
+            return new GroupTreeSpliterator<>(List.of(group), 0, 1, level, true, estimate);
+        }
+        return null;
+    }
+
+    @Override
+    public long estimateSize() {
+        return depth < 0 ? 0 : estimate;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED;
+    }
+}
@@ -3,6 +3,8 @@ package com.happyheal.model;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Spliterator;
+import java.util.function.Consumer;
 
 /**
  * Represents a product group that can contain subgroups and/or products.
@@ -87,25 +89,76 @@ public class ProductGroup {
     }
     
     /**
-     * Recursively flattens the product group tree to get all products.
+     * Calls the action for this group and every group below it, parents before their subgroups.
      */
-    public List<Product> getAllProducts() {
-        List<Product> allProducts = new ArrayList<>(products);
+    public void forEachGroup(Consumer<? super ProductGroup> action) {
+        action.accept(this);
         for (ProductGroup subGroup : subGroups) {
-            allProducts.addAll(subGroup.getAllProducts());
+            subGroup.forEachGroup(action);
         }
+    }
+    
+    /**
+     * Calls the action for every product in this group and the groups below it, in tree order.
+     */
+    public void forEachProduct(Consumer<? super Product> action) {
+        products.forEach(action);
+        for (ProductGroup subGroup : subGroups) {
+            subGroup.forEachProduct(action);
+        }
+    }
+    
+    /**
+     * Calls the action for every instance of the products in this group and the groups below it.
+     */
+    public void forEachInstance(Consumer<? super ProductInstance> action) {
+        for (Product product : products) {
+            product.getInstances().forEach(action);
+        }
+        for (ProductGroup subGroup : subGroups) {
+            subGroup.forEachInstance(action);
+        }
+    }
+    
+    /**
+     * Spliterator over this group and the groups below it, e.g. for
+     * {@code StreamSupport.stream(group.groupSpliterator(), true)}.
+     */
+    public Spliterator<ProductGroup> groupSpliterator() {
+        return new GroupTreeSpliterator<>(List.of(this), GroupTreeSpliterator.Level.GROUPS);
+    }
+    
+    /**
+     * Spliterator over the products in this group and the groups below it.
+     */
+    public Spliterator<Product> productSpliterator() {
+        return new GroupTreeSpliterator<>(List.of(this), GroupTreeSpliterator.Level.PRODUCTS);
+    }
+    
+    /**
+     * Spliterator over the instances of the products in this group and the groups below it.
+     */
+    public Spliterator<ProductInstance> instanceSpliterator() {
+        return new GroupTreeSpliterator<>(List.of(this), GroupTreeSpliterator.Level.INSTANCES);
+    }
+    
+    /**
+     * Collects all products of this group and the groups below it into a new list.
+     * Use {@link #forEachProduct} when the list itself is not needed.
+     */
+    public List<Product> getAllProducts() {
+        List<Product> allProducts = new ArrayList<>();
+        forEachProduct(allProducts::add);
         return allProducts;
     }
     
     /**
-     * Recursively flattens the product group tree to get all groups.
+     * Collects this group and all groups below it into a new list.
+     * Use {@link #forEachGroup} when the list itself is not needed.
      */
     public List<ProductGroup> getAllGroups() {
         List<ProductGroup> allGroups = new ArrayList<>();
-        allGroups.add(this);
-        for (ProductGroup subGroup : subGroups) {
-            allGroups.addAll(subGroup.getAllGroups());
-        }
+        forEachGroup(allGroups::add);
         return allGroups;
     }
     
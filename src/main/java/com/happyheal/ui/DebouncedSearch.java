@@ -0,0 +1,86 @@
+package com.happyheal.ui;
+
+import com.happyheal.database.CatalogSearch;
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
+import javafx.scene.control.TextField;
+import javafx.util.Duration;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * Search-as-you-type for a text field. A search starts once typing pauses for
+ * {@code happyheal.ui.searchDebounceMs} (150); starting one cancels the search still running
+ * for older input. Searches run on a background thread and only the newest results are shown.
+ */
+public class DebouncedSearch<T> {
+
+    private static final long DEBOUNCE_MS = Long.getLong("happyheal.ui.searchDebounceMs", 150L);
+    private static final int LIMIT = Integer.getInteger("happyheal.ui.searchLimit", 200);
+
+    private static final ExecutorService searchExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "catalog-search");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final BiFunction<String, Integer, CatalogSearch.Query<T>> queries;
+    private final Consumer<List<T>> onResults;
+    private final Consumer<String> onError;
+    private final PauseTransition debounce = new PauseTransition(Duration.millis(DEBOUNCE_MS));
+
+    // Only touched on the FX thread
+    private CatalogSearch.Query<T> running;
+
+    /**
+     * @param queries Creates the search for some input and a result limit, e.g. {@code CatalogSearch::instances}
+     * @param onResults Receives the results of the newest search on the FX thread
+     * @param onError Receives the message of a failed search on the FX thread
+     */
+    public DebouncedSearch(TextField field, BiFunction<String, Integer, CatalogSearch.Query<T>> queries,
+                           Consumer<List<T>> onResults, Consumer<String> onError) {
+        this.queries = queries;
+        this.onResults = onResults;
+        this.onError = onError;
+        debounce.setOnFinished(e -> search(field.getText()));
+        field.textProperty().addListener((obs, oldText, newText) -> debounce.playFromStart());
+        field.setOnAction(e -> {
+            debounce.stop();
+            search(field.getText());
+        });
+    }
+
+    /**
+     * Starts a search right away, e.g. to fill the table before anything was typed.
+     */
+    public void search(String text) {
+        if (running != null) {
+            running.cancel();
+        }
+        CatalogSearch.Query<T> query = queries.apply(text, LIMIT);
+        running = query;
+        searchExecutor.execute(() -> {
+            try {
+                List<T> results = query.run();
+                Platform.runLater(() -> {
+                    if (running == query) {
+                        onResults.accept(results);
+                    }
+                });
+            } catch (CancellationException e) {
+                // Superseded by newer input
+            } catch (Exception e) {
+                Platform.runLater(() -> {
+                    if (running == query) {
+                        onError.accept(e.getMessage());
+                    }
+                });
+            }
+        });
+    }
+}
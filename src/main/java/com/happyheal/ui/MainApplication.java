@@ -2,6 +2,11 @@ package com.happyheal.ui;
 
 import com.happyheal.model.User;
 import com.happyheal.database.DatabaseManager;
+import com.happyheal.metrics.MetricsServer;
+import com.happyheal.workflow.TransitionOutbox;
+import com.happyheal.workflow.WorkflowExecutor;
+import com.happyheal.workflow.action.FileSink;
+import com.happyheal.workflow.action.MailAction;
 import javafx.application.Application;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
@@ -139,7 +144,7 @@ public class MainApplication extends Application {
     }
     
     private User authenticateUser(String username, String password) {
-        try (Connection conn = DatabaseManager.getConnection()) {
+        try (Connection conn = DatabaseManager.getReadConnection()) {
             String sql = "SELECT username, password, display_name FROM users WHERE username = ?";
             PreparedStatement pstmt = conn.prepareStatement(sql);
             pstmt.setString(1, username);
@@ -178,6 +183,17 @@ public class MainApplication extends Application {
         System.out.println("Welcome, " + currentUser.getDisplayName() + "!");
     }
     
+    @Override
+    public void stop() {
+        // Let in-flight transitions store their state before the pool closes
+        TransitionOutbox.shutdown();
+        WorkflowExecutor.shutdown();
+        FileSink.shutdown();
+        MailAction.shutdown();
+        DatabaseManager.shutdown();
+        MetricsServer.stop();
+    }
+    
     public static void main(String[] args) {
         launch(args);
     }
@@ -1,10 +1,23 @@
 package com.happyheal.ui;
 
+import com.happyheal.database.CatalogSearch;
+import com.happyheal.database.CatalogSearch.InstanceHit;
+import com.happyheal.database.CatalogSearch.ProductHit;
+import com.happyheal.database.GroupRollup;
+import com.happyheal.database.GroupRollup.GroupCounts;
+import com.happyheal.database.GroupRollup.StateCount;
 import com.happyheal.model.User;
+import com.happyheal.workflow.action.NotificationCenter;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyStringWrapper;
 import javafx.geometry.Insets;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
 /**
  * Main controller for the application's primary interface.
  * Manages navigation and content display.
@@ -15,6 +28,7 @@ public class MainController {
     private BorderPane mainLayout;
     private TreeView<String> navigationTree;
     private VBox contentArea;
+    private NotificationPanel notificationPanel;
     
     public MainController(User currentUser) {
         this.currentUser = currentUser;
@@ -110,7 +124,8 @@ public class MainController {
         TreeItem<String> productsItem = new TreeItem<>("Product Management");
         TreeItem<String> allProductsItem = new TreeItem<>("All Products");
         TreeItem<String> productInstancesItem = new TreeItem<>("Product Instances");
-        productsItem.getChildren().addAll(allProductsItem, productInstancesItem);
+        TreeItem<String> barcodeScanItem = new TreeItem<>("Barcode Scan");
+        productsItem.getChildren().addAll(allProductsItem, productInstancesItem, barcodeScanItem);
         
         // Reports
         TreeItem<String> reportsItem = new TreeItem<>("Reports");
@@ -204,13 +219,37 @@ public class MainController {
         Region spacer = new Region();
         HBox.setHgrow(spacer, Priority.ALWAYS);
         
+        ToggleButton notificationsButton = new ToggleButton();
+        notificationsButton.setStyle("-fx-font-size: 12px; -fx-padding: 2 8;");
+        notificationsButton.textProperty().bind(NotificationCenter.unreadProperty().asString("Notifications (%d)"));
+        notificationsButton.setOnAction(e -> toggleNotifications(notificationsButton.isSelected()));
+        NotificationCenter.unreadProperty().addListener((obs, oldCount, newCount) -> {
+            // Notifications arriving while the panel is open count as read
+            if (notificationsButton.isSelected() && newCount.intValue() > 0) {
+                NotificationCenter.markAllRead();
+            }
+        });
+        
         Label versionLabel = new Label("Version 1.0.0");
         versionLabel.setStyle("-fx-text-fill: #666666; -fx-font-size: 12px;");
         
-        statusBar.getChildren().addAll(statusLabel, spacer, versionLabel);
+        statusBar.setSpacing(10);
+        statusBar.getChildren().addAll(statusLabel, spacer, notificationsButton, versionLabel);
         return statusBar;
     }
     
+    private void toggleNotifications(boolean show) {
+        if (show) {
+            if (notificationPanel == null) {
+                notificationPanel = new NotificationPanel();
+            }
+            mainLayout.setRight(notificationPanel);
+        } else {
+            mainLayout.setRight(null);
+        }
+        NotificationCenter.markAllRead();
+    }
+    
     private void handleNavigationSelection(String selectedItem) {
         // Clear current content
         contentArea.getChildren().clear();
@@ -223,6 +262,9 @@ public class MainController {
             case "Product Instances":
                 showProductInstances();
                 break;
+            case "Barcode Scan":
+                showBarcodeScan();
+                break;
             case "Default Stocking":
             case "Extended Stocking":
                 showWorkflowView(selectedItem);
@@ -242,35 +284,73 @@ public class MainController {
         Label titleLabel = new Label("Product Management");
         titleLabel.setStyle("-fx-font-size: 20px; -fx-font-weight: bold; -fx-text-fill: #2c5aa0;");
         
-        // Create product table (simplified for now)
-        TableView<String> productTable = new TableView<>();
-        TableColumn<String, String> nameCol = new TableColumn<>("Product Name");
-        TableColumn<String, String> numberCol = new TableColumn<>("Product Number");
-        TableColumn<String, String> groupCol = new TableColumn<>("Group");
+        TextField searchField = new TextField();
+        searchField.setPromptText("Search by name or product number");
+        Label statusLabel = new Label();
+        statusLabel.setStyle("-fx-text-fill: #666666;");
+        
+        TableView<ProductHit> productTable = new TableView<>();
+        TableColumn<ProductHit, String> nameCol = column("Product Name", ProductHit::name);
+        TableColumn<ProductHit, String> numberCol = column("Product Number", ProductHit::productNumber);
+        TableColumn<ProductHit, String> groupCol = column("Group", ProductHit::groupName);
         
         productTable.getColumns().addAll(nameCol, numberCol, groupCol);
         productTable.setPlaceholder(new Label("No products to display"));
         
+        DebouncedSearch<ProductHit> search = new DebouncedSearch<>(searchField, CatalogSearch::products,
+            products -> {
+                productTable.getItems().setAll(products);
+                statusLabel.setText(products.size() + " products");
+            },
+            error -> statusLabel.setText("Search failed: " + error));
+        search.search("");
+        
         VBox.setVgrow(productTable, Priority.ALWAYS);
-        contentArea.getChildren().addAll(titleLabel, productTable);
+        contentArea.getChildren().addAll(titleLabel, searchField, statusLabel, productTable);
     }
     
     private void showProductInstances() {
         Label titleLabel = new Label("Product Instances");
         titleLabel.setStyle("-fx-font-size: 20px; -fx-font-weight: bold; -fx-text-fill: #2c5aa0;");
         
+        TextField searchField = new TextField();
+        searchField.setPromptText("Search by serial number, customer mail or customer name");
+        Label statusLabel = new Label();
+        statusLabel.setStyle("-fx-text-fill: #666666;");
+        
         // Create instance table
-        TableView<String> instanceTable = new TableView<>();
-        TableColumn<String, String> serialCol = new TableColumn<>("Serial Number");
-        TableColumn<String, String> productCol = new TableColumn<>("Product");
-        TableColumn<String, String> customerCol = new TableColumn<>("Customer");
-        TableColumn<String, String> stateCol = new TableColumn<>("State");
+        TableView<InstanceHit> instanceTable = new TableView<>();
+        TableColumn<InstanceHit, String> serialCol = column("Serial Number", InstanceHit::serialNumber);
+        TableColumn<InstanceHit, String> productCol = column("Product", InstanceHit::productName);
+        TableColumn<InstanceHit, String> customerCol = column("Customer", hit ->
+            hit.customerName() != null ? hit.customerName() + " <" + hit.customerMail() + ">" : hit.customerMail());
+        TableColumn<InstanceHit, String> stateCol = column("State", InstanceHit::stateTitle);
         
         instanceTable.getColumns().addAll(serialCol, productCol, customerCol, stateCol);
         instanceTable.setPlaceholder(new Label("No instances to display"));
         
+        DebouncedSearch<InstanceHit> search = new DebouncedSearch<>(searchField, CatalogSearch::instances,
+            instances -> {
+                instanceTable.getItems().setAll(instances);
+                statusLabel.setText(instances.size() + " instances");
+            },
+            error -> statusLabel.setText("Search failed: " + error));
+        search.search("");
+        
         VBox.setVgrow(instanceTable, Priority.ALWAYS);
-        contentArea.getChildren().addAll(titleLabel, instanceTable);
+        contentArea.getChildren().addAll(titleLabel, searchField, statusLabel, instanceTable);
+    }
+    
+    private static <T> TableColumn<T, String> column(String title, Function<T, String> value) {
+        TableColumn<T, String> column = new TableColumn<>(title);
+        column.setCellValueFactory(cell -> new ReadOnlyStringWrapper(value.apply(cell.getValue())));
+        return column;
+    }
+    
+    private void showBarcodeScan() {
+        ScanPanel scanPanel = new ScanPanel();
+        VBox.setVgrow(scanPanel, Priority.ALWAYS);
+        contentArea.getChildren().add(scanPanel);
     }
     
     private void showWorkflowView(String workflowName) {
@@ -287,12 +367,53 @@ public class MainController {
         Label titleLabel = new Label("Workflow Status Report");
         titleLabel.setStyle("-fx-font-size: 20px; -fx-font-weight: bold; -fx-text-fill: #2c5aa0;");
         
-        Label descLabel = new Label("Workflow status statistics and reports will be displayed here.");
-        descLabel.setStyle("-fx-text-fill: #666666;");
+        Label statusLabel = new Label("Loading...");
+        statusLabel.setStyle("-fx-text-fill: #666666;");
+        
+        // One row per group and state; a group's counts include all its subgroups
+        TableView<ReportRow> reportTable = new TableView<>();
+        TableColumn<ReportRow, String> groupCol = column("Product Group", ReportRow::group);
+        TableColumn<ReportRow, String> workflowCol = column("Workflow", ReportRow::workflow);
+        TableColumn<ReportRow, String> stateCol = column("State", ReportRow::state);
+        TableColumn<ReportRow, String> instancesCol = column("Instances", ReportRow::instances);
+        instancesCol.setStyle("-fx-alignment: CENTER-RIGHT;");
+        
+        reportTable.getColumns().addAll(groupCol, workflowCol, stateCol, instancesCol);
+        reportTable.setPlaceholder(new Label("No product groups to display"));
+        
+        Thread loader = new Thread(() -> {
+            try {
+                long start = System.nanoTime();
+                List<GroupCounts> groups = GroupRollup.countByStateForAllGroups();
+                long millis = (System.nanoTime() - start) / 1_000_000;
+                List<ReportRow> rows = new ArrayList<>();
+                for (GroupCounts group : groups) {
+                    String name = "    ".repeat(group.depth()) + group.groupName();
+                    String workflow = group.workflowName() != null ? group.workflowName() : "None";
+                    rows.add(new ReportRow(name, workflow, "All states", String.valueOf(group.totalInstances())));
+                    for (StateCount state : group.states()) {
+                        String title = state.stateTitle() != null ? state.stateTitle()
+                            : state.stateId() != null ? state.stateId() : "No state";
+                        rows.add(new ReportRow("", "", title, String.valueOf(state.instances())));
+                    }
+                }
+                Platform.runLater(() -> {
+                    reportTable.getItems().setAll(rows);
+                    statusLabel.setText(groups.size() + " product groups, loaded in " + millis + " ms");
+                });
+            } catch (Exception e) {
+                Platform.runLater(() -> statusLabel.setText("Failed to load report: " + e.getMessage()));
+            }
+        }, "workflow-report");
+        loader.setDaemon(true);
+        loader.start();
         
-        contentArea.getChildren().addAll(titleLabel, descLabel);
+        VBox.setVgrow(reportTable, Priority.ALWAYS);
+        contentArea.getChildren().addAll(titleLabel, statusLabel, reportTable);
     }
     
+    private record ReportRow(String group, String workflow, String state, String instances) {}
+    
     private void showCustomerReport() {
         Label titleLabel = new Label("Customer Report");
         titleLabel.setStyle("-fx-font-size: 20px; -fx-font-weight: bold; -fx-text-fill: #2c5aa0;");
@@ -0,0 +1,58 @@
+package com.happyheal.ui;
+
+import com.happyheal.workflow.action.NotificationCenter;
+import com.happyheal.workflow.action.NotificationCenter.Notification;
+import javafx.geometry.Insets;
+import javafx.scene.control.*;
+import javafx.scene.layout.*;
+
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Side panel listing workflow notifications from the {@link NotificationCenter}.
+ * The list only creates cells for the visible rows, so thousands of notifications stay cheap.
+ */
+public class NotificationPanel extends VBox {
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    public NotificationPanel() {
+        setPrefWidth(320);
+        setSpacing(5);
+        setPadding(new Insets(10));
+        setStyle("-fx-background-color: #f8f9fa; -fx-border-color: #dee2e6; -fx-border-width: 0 0 0 1;");
+
+        Label titleLabel = new Label("Notifications");
+        titleLabel.setStyle("-fx-font-size: 16px; -fx-font-weight: bold;");
+
+        Region spacer = new Region();
+        HBox.setHgrow(spacer, Priority.ALWAYS);
+
+        Button clearButton = new Button("Clear");
+        clearButton.setOnAction(e -> NotificationCenter.clear());
+
+        HBox header = new HBox(10, titleLabel, spacer, clearButton);
+
+        ListView<Notification> listView = new ListView<>(NotificationCenter.getNotifications());
+        listView.setPlaceholder(new Label("No notifications"));
+        listView.setCellFactory(view -> new NotificationCell());
+        VBox.setVgrow(listView, Priority.ALWAYS);
+
+        getChildren().addAll(header, listView);
+    }
+
+    private static class NotificationCell extends ListCell<Notification> {
+        @Override
+        protected void updateItem(Notification notification, boolean empty) {
+            super.updateItem(notification, empty);
+            if (empty || notification == null) {
+                setText(null);
+                return;
+            }
+            String count = notification.count() > 1 ? " (" + notification.count() + "x)" : "";
+            setText(TIME_FORMAT.format(notification.lastPosted()) + count + "\n" + notification.message());
+            setWrapText(true);
+        }
+    }
+}
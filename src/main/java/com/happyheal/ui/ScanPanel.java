@@ -0,0 +1,179 @@
+package com.happyheal.ui;
+
+import com.happyheal.workflow.SerialIndex;
+import com.happyheal.workflow.SerialIndex.ScanResult;
+import com.happyheal.workflow.WorkflowExecutor;
+import com.happyheal.workflow.WorkflowGraph.CompiledTransition;
+import javafx.application.Platform;
+import javafx.geometry.Insets;
+import javafx.scene.control.*;
+import javafx.scene.layout.*;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Barcode-scan entry: a scanned serial number shows the instance, its state and buttons for
+ * the transitions leaving that state. Lookups go to the {@link SerialIndex}; typed input
+ * lists the serial numbers starting with it. Scanners that end a scan with Enter can scan
+ * one instance after the other without touching the mouse.
+ */
+public class ScanPanel extends VBox {
+
+    private static final int MAX_MATCHES = 20;
+
+    // Lookups run off the FX thread, since the first one loads the index
+    private static final ExecutorService lookupExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "serial-lookup");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final TextField scanField = new TextField();
+    private final Label statusLabel = new Label("Loading serial index...");
+    private final VBox resultBox = new VBox(8);
+    private final ListView<ScanResult> matchList = new ListView<>();
+
+    public ScanPanel() {
+        setSpacing(15);
+
+        Label titleLabel = new Label("Barcode Scan");
+        titleLabel.setStyle("-fx-font-size: 20px; -fx-font-weight: bold; -fx-text-fill: #2c5aa0;");
+
+        scanField.setPromptText("Scan or type a serial number");
+        scanField.setStyle("-fx-font-size: 16px;");
+        scanField.setOnAction(e -> scan(scanField.getText()));
+        scanField.textProperty().addListener((obs, oldText, newText) -> showMatches(newText));
+
+        statusLabel.setStyle("-fx-text-fill: #666666;");
+
+        matchList.setPlaceholder(new Label("No matching serial numbers"));
+        matchList.setCellFactory(view -> new MatchCell());
+        matchList.getSelectionModel().selectedItemProperty().addListener((obs, oldMatch, newMatch) -> {
+            if (newMatch != null) {
+                showResult(newMatch);
+            }
+        });
+        VBox.setVgrow(matchList, Priority.ALWAYS);
+
+        getChildren().addAll(titleLabel, scanField, statusLabel, resultBox, matchList);
+        Platform.runLater(scanField::requestFocus);
+
+        lookupExecutor.execute(() -> {
+            try {
+                int size = SerialIndex.current().size();
+                Platform.runLater(() -> statusLabel.setText("Ready, " + size + " instances indexed"));
+            } catch (Exception e) {
+                Platform.runLater(() -> statusLabel.setText("Serial index unavailable: " + e.getMessage()));
+            }
+        });
+    }
+
+    private void scan(String input) {
+        // Scanners may add whitespace or a line break around the code
+        String serialNumber = input != null ? input.strip() : "";
+        if (serialNumber.isEmpty()) {
+            return;
+        }
+        lookupExecutor.execute(() -> {
+            try {
+                long start = System.nanoTime();
+                ScanResult result = SerialIndex.current().find(serialNumber);
+                long micros = (System.nanoTime() - start) / 1000;
+                Platform.runLater(() -> {
+                    if (result == null) {
+                        statusLabel.setText("No instance with serial number " + serialNumber + " (" + micros + " µs)");
+                        resultBox.getChildren().clear();
+                        return;
+                    }
+                    statusLabel.setText("Found in " + micros + " µs");
+                    showResult(result);
+                    // Ready for the next scan
+                    scanField.clear();
+                });
+            } catch (Exception e) {
+                Platform.runLater(() -> statusLabel.setText("Lookup failed: " + e.getMessage()));
+            }
+        });
+    }
+
+    private void showMatches(String input) {
+        String prefix = input != null ? input.strip() : "";
+        if (prefix.length() < 3) {
+            matchList.getItems().clear();
+            return;
+        }
+        lookupExecutor.execute(() -> {
+            try {
+                List<ScanResult> matches = SerialIndex.current().findByPrefix(prefix, MAX_MATCHES);
+                Platform.runLater(() -> {
+                    // Skip results for input that has changed meanwhile
+                    if (prefix.equals(scanField.getText().strip())) {
+                        matchList.getItems().setAll(matches);
+                    }
+                });
+            } catch (Exception e) {
+                Platform.runLater(() -> statusLabel.setText("Lookup failed: " + e.getMessage()));
+            }
+        });
+    }
+
+    private void showResult(ScanResult result) {
+        Label serialLabel = new Label(result.serialNumber());
+        serialLabel.setStyle("-fx-font-size: 18px; -fx-font-weight: bold;");
+
+        Label productLabel = new Label(result.productName() + " (" + result.productNumber() + ")");
+        Label stateLabel = new Label("State: " + (result.stateId() != null ? result.stateId() : "none"));
+
+        FlowPane transitionButtons = new FlowPane(8, 8);
+        for (CompiledTransition transition : result.transitions()) {
+            Button button = new Button(transition.type() + " → " + transition.toStateId());
+            button.setDisable(!transition.isValid());
+            button.setOnAction(e -> execute(result, transition));
+            transitionButtons.getChildren().add(button);
+        }
+        if (result.transitions().isEmpty()) {
+            transitionButtons.getChildren().add(new Label("No transitions from this state"));
+        }
+
+        resultBox.setPadding(new Insets(10));
+        resultBox.setStyle("-fx-background-color: #f8f9fa; -fx-border-color: #dee2e6; -fx-border-radius: 3;");
+        resultBox.getChildren().setAll(serialLabel, productLabel, stateLabel, transitionButtons);
+    }
+
+    private void execute(ScanResult scanned, CompiledTransition transition) {
+        resultBox.setDisable(true);
+        WorkflowExecutor.executeTransitionAsync(scanned.instanceId(), transition.id())
+            .thenAcceptAsync(result -> {
+                ScanResult updated = null;
+                try {
+                    updated = SerialIndex.current().find(scanned.serialNumber());
+                } catch (Exception e) {
+                    System.err.println("Failed to refresh scanned instance: " + e.getMessage());
+                }
+                ScanResult shown = updated != null ? updated : scanned;
+                Platform.runLater(() -> {
+                    resultBox.setDisable(false);
+                    statusLabel.setText(result.success()
+                        ? transition.type() + " executed for " + scanned.serialNumber()
+                        : transition.type() + " failed: " + result.error());
+                    showResult(shown);
+                    scanField.requestFocus();
+                });
+            }, lookupExecutor);
+    }
+
+    private static class MatchCell extends ListCell<ScanResult> {
+        @Override
+        protected void updateItem(ScanResult match, boolean empty) {
+            super.updateItem(match, empty);
+            if (empty || match == null) {
+                setText(null);
+                return;
+            }
+            setText(match.serialNumber() + "  –  " + match.productName()
+                + (match.stateId() != null ? "  [" + match.stateId() + "]" : ""));
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.happyheal.workflow;
+
+import java.util.Map;
+
+/**
+ * Parsed and validated setup of a transition action.
+ * Specs are built once when the {@link WorkflowGraph} is compiled, so executing a
+ * transition never has to look at the raw setup JSON again. The records below are
+ * the specs of the built-in actions; other actions define their own and can use the
+ * static helpers to read and validate their setup.
+ */
+public interface ActionSpec {
+
+    /**
+     * The lower-case transition type this spec belongs to.
+     */
+    String type();
+
+    /**
+     * @param coalesce Whether bodies for the same endpoint are sent together as a JSON array
+     */
+    record Http(String endpoint, String body, boolean coalesce) implements ActionSpec {
+        @Override
+        public String type() {
+            return "http";
+        }
+    }
+
+    record File(String path, String content, boolean append) implements ActionSpec {
+        @Override
+        public String type() {
+            return "file";
+        }
+    }
+
+    /**
+     * @param digest Whether mails to the same recipient are combined into one digest mail
+     * @param digestSubject Subject template of a digest, or null for the default
+     * @param digestBody Body template of a digest, or null for the default
+     */
+    record Mail(String from, String to, String subject, String body, boolean digest,
+                String digestSubject, String digestBody) implements ActionSpec {
+        @Override
+        public String type() {
+            return "mail";
+        }
+    }
+
+    record MessageBox(String content) implements ActionSpec {
+        @Override
+        public String type() {
+            return "messagebox";
+        }
+    }
+
+    record NoAction() implements ActionSpec {
+        @Override
+        public String type() {
+            return "noaction";
+        }
+    }
+
+    /**
+     * Returns a required template value, checking that it compiles.
+     */
+    static String required(Map<String, Object> setup, String key) {
+        String value = template(setup, key);
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Setup." + key + " not specified");
+        }
+        return value;
+    }
+
+    /**
+     * Returns an optional template value, checking that it compiles.
+     */
+    static String template(Map<String, Object> setup, String key) {
+        Object value = setup != null ? setup.get(key) : null;
+        if (value == null) {
+            return null;
+        }
+        if (!(value instanceof String template)) {
+            throw new IllegalArgumentException("Setup." + key + " must be a string");
+        }
+        if (!MustacheTemplateEngine.validateTemplate(template)) {
+            throw new IllegalArgumentException("Setup." + key + " is not a valid template");
+        }
+        return template;
+    }
+
+    /**
+     * Returns an optional boolean value; "true" and "false" strings are accepted too.
+     */
+    static boolean flag(Map<String, Object> setup, String key) {
+        Object value = setup != null ? setup.get(key) : null;
+        if (value == null || value instanceof Boolean) {
+            return Boolean.TRUE.equals(value);
+        }
+        if (value instanceof String text && (text.equalsIgnoreCase("true") || text.equalsIgnoreCase("false"))) {
+            return Boolean.parseBoolean(text);
+        }
+        throw new IllegalArgumentException("Setup." + key + " must be true or false");
+    }
+
+    /**
+     * Endpoints in data.json are written without a scheme ("api.example.com/v1/..."),
+     * which URI.create rejects; those are sent over https.
+     */
+    static String normalizeEndpoint(String endpoint) {
+        if (endpoint.contains("://") || endpoint.startsWith("{{")) {
+            return endpoint;
+        }
+        return "https://" + endpoint;
+    }
+}
@@ -3,6 +3,8 @@ package com.happyheal.workflow;
 import com.github.mustachejava.DefaultMustacheFactory;
 import com.github.mustachejava.Mustache;
 import com.github.mustachejava.MustacheFactory;
+import com.happyheal.metrics.LatencyHistogram;
+import com.happyheal.metrics.MetricsRegistry;
 
 import java.io.StringReader;
 import java.io.StringWriter;
@@ -16,6 +18,21 @@ public class MustacheTemplateEngine {
     
     private static final MustacheFactory mustacheFactory = new DefaultMustacheFactory();
     
+    // Compiled templates keyed by content; limits can be tuned with system properties
+    private static final TemplateCache templateCache = new TemplateCache(
+        Integer.getInteger("happyheal.template.cache.maxEntries", 256),
+        Long.getLong("happyheal.template.cache.maxChars", 1_000_000L));
+    
+    private static final LatencyHistogram renderLatency = MetricsRegistry.histogram(
+        "happyheal_template_render_seconds", "Time to render a Mustache template");
+    
+    static {
+        MetricsRegistry.counter("happyheal_template_cache_hits_total", "Template cache hits", templateCache::getHitCount);
+        MetricsRegistry.counter("happyheal_template_cache_misses_total", "Template cache misses", templateCache::getMissCount);
+        MetricsRegistry.counter("happyheal_template_cache_evictions_total", "Template cache evictions", templateCache::getEvictionCount);
+        MetricsRegistry.gauge("happyheal_template_cache_entries", "Compiled templates in the cache", templateCache::size);
+    }
+    
     /**
      * Processes a template string with the provided context variables.
      * 
@@ -28,21 +45,53 @@ public class MustacheTemplateEngine {
             return template;
         }
         
+        long start = System.nanoTime();
+        TemplateRenderEvent event = new TemplateRenderEvent();
+        event.begin();
+        String result = template;
         try {
-            // Create mustache from template string
-            Mustache mustache = mustacheFactory.compile(new StringReader(template), "template");
+            // Look up the compiled template, compiling it on first use
+            Mustache mustache = templateCache.get(template, MustacheTemplateEngine::compile);
             
             // Process template with context
             StringWriter writer = new StringWriter();
             mustache.execute(writer, context);
             writer.flush();
             
-            return writer.toString();
+            result = writer.toString();
         } catch (Exception e) {
             System.err.println("Error processing Mustache template: " + e.getMessage());
             e.printStackTrace();
-            return template; // Return original template if processing fails
+            // Return original template if processing fails
+        } finally {
+            renderLatency.record(System.nanoTime() - start);
+            event.end();
+            if (event.shouldCommit()) {
+                event.templateLength = template.length();
+                event.outputLength = result.length();
+                event.commit();
+            }
         }
+        return result;
+    }
+    
+    private static Mustache compile(String template) {
+        TemplateCompileEvent event = new TemplateCompileEvent();
+        event.begin();
+        Mustache mustache = mustacheFactory.compile(new StringReader(template), "template");
+        event.end();
+        if (event.shouldCommit()) {
+            event.templateLength = template.length();
+            event.commit();
+        }
+        return mustache;
+    }
+    
+    /**
+     * Returns the compiled template cache, e.g. to read its hit/miss/eviction counters.
+     */
+    public static TemplateCache getTemplateCache() {
+        return templateCache;
     }
     
     /**
@@ -102,8 +151,8 @@ public class MustacheTemplateEngine {
         }
         
         try {
-            // Try to compile the template
-            mustacheFactory.compile(new StringReader(template), "validation");
+            // Try to compile the template; a valid template stays cached for rendering
+            templateCache.get(template, MustacheTemplateEngine::compile);
             return true;
         } catch (Exception e) {
             System.err.println("Template validation failed: " + e.getMessage());
@@ -0,0 +1,232 @@
+package com.happyheal.workflow;
+
+import com.happyheal.database.DatabaseManager;
+import com.happyheal.workflow.WorkflowGraph.CompiledTransition;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * In-memory index of all product instances by serial number, for scan-driven work.
+ *
+ * <p>A lookup returns the instance, its product, its current state and the transitions
+ * leaving that state without touching the database. Serial numbers are compared as plain
+ * strings, so characters such as {@code %}, {@code _}, quotes or backslashes need no
+ * escaping, and prefix lookups walk the sorted map instead of running a LIKE query.</p>
+ *
+ * <p>The index is loaded on first use. Transitions update the state of their instances
+ * after they commit; committed imports only load the instances with higher ids, and a
+ * sync or clear reloads it, as signalled through {@link DatabaseManager}.</p>
+ */
+public final class SerialIndex {
+
+    private static volatile SerialIndex current;
+
+    // Transitions committed while instances are loaded, applied to the loaded entries afterwards
+    private static volatile Map<Long, String> pendingStates;
+
+    /**
+     * A product instance found by a scan.
+     *
+     * @param stateId The current workflow state, or null if the instance has none
+     * @param transitions The transitions leaving the current state, in definition order
+     */
+    public record ScanResult(long instanceId, String serialNumber, String productId, String productName,
+                             String productNumber, String stateId, List<CompiledTransition> transitions) {}
+
+    private record ProductInfo(String id, String name, String productNumber) {}
+
+    private static final class Entry {
+        final long id;
+        final String serialNumber;
+        final ProductInfo product;
+        volatile String stateId;
+
+        Entry(long id, String serialNumber, ProductInfo product, String stateId) {
+            this.id = id;
+            this.serialNumber = serialNumber;
+            this.product = product;
+            this.stateId = stateId;
+        }
+    }
+
+    private final long catalogVersion;
+    private volatile long instanceVersion = -1;
+    private final ConcurrentSkipListMap<String, Entry> bySerial = new ConcurrentSkipListMap<>();
+
+    // Indexed by instance id, grown when instances are added; ids are dense in practice
+    private volatile Entry[] byId = new Entry[0];
+    private long maxId;
+
+    // Shared between the entries of one product and state; only used while loading
+    private final Map<String, ProductInfo> products = new HashMap<>();
+    private final Map<String, String> stateIds = new HashMap<>();
+
+    private SerialIndex(long catalogVersion) {
+        this.catalogVersion = catalogVersion;
+    }
+
+    /**
+     * Returns the shared index, loading it or the instances added since it was loaded.
+     */
+    public static SerialIndex current() throws SQLException {
+        SerialIndex index = current;
+        if (index != null && index.catalogVersion == DatabaseManager.getCatalogVersion()
+                && index.instanceVersion == DatabaseManager.getInstanceVersion()) {
+            return index;
+        }
+        synchronized (SerialIndex.class) {
+            index = current;
+            long catalogVersion = DatabaseManager.getCatalogVersion();
+            long instanceVersion = DatabaseManager.getInstanceVersion();
+            if (index != null && index.catalogVersion == catalogVersion && index.instanceVersion == instanceVersion) {
+                return index;
+            }
+            Map<Long, String> pending = new ConcurrentHashMap<>();
+            pendingStates = pending;
+            try {
+                if (index == null || index.catalogVersion != catalogVersion) {
+                    index = new SerialIndex(catalogVersion);
+                }
+                index.load(instanceVersion);
+                current = index;
+                pending.forEach(index::setState);
+            } finally {
+                pendingStates = null;
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Records committed state changes of the given instances.
+     */
+    static void statesChanged(Collection<Long> instanceIds, String stateId) {
+        Map<Long, String> pending = pendingStates;
+        SerialIndex index = current;
+        for (Long instanceId : instanceIds) {
+            if (pending != null) {
+                pending.put(instanceId, stateId);
+            }
+            if (index != null) {
+                index.setState(instanceId, stateId);
+            }
+        }
+    }
+
+    /**
+     * Loads the instances with ids above the ones already indexed. Callers hold the class lock.
+     */
+    private void load(long version) throws SQLException {
+        String sql = """
+            SELECT pi.id, pi.serial_number, pi.current_state_id, p.id AS product_id, p.name, p.product_number
+            FROM product_instances pi
+            JOIN products p ON pi.product_id = p.id
+            WHERE pi.id > ?
+            ORDER BY pi.id
+        """;
+        long start = System.nanoTime();
+        List<Entry> added = new ArrayList<>();
+        try (Connection conn = DatabaseManager.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setLong(1, maxId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    String productId = rs.getString("product_id");
+                    ProductInfo product = products.get(productId);
+                    if (product == null) {
+                        product = new ProductInfo(productId, rs.getString("name"), rs.getString("product_number"));
+                        products.put(productId, product);
+                    }
+                    String stateId = rs.getString("current_state_id");
+                    if (stateId != null) {
+                        stateId = stateIds.computeIfAbsent(stateId, id -> id);
+                    }
+                    added.add(new Entry(rs.getLong("id"), rs.getString("serial_number"), product, stateId));
+                }
+            }
+        }
+
+        if (!added.isEmpty()) {
+            long newMaxId = added.get(added.size() - 1).id;
+            if (newMaxId >= Integer.MAX_VALUE - 8) {
+                throw new SQLException("Product instance ids too large for the serial index: " + newMaxId);
+            }
+            Entry[] entries = byId.length > newMaxId ? byId
+                : Arrays.copyOf(byId, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(newMaxId + 1, byId.length * 3L / 2)));
+            for (Entry entry : added) {
+                entries[(int) entry.id] = entry;
+                bySerial.put(entry.serialNumber, entry);
+            }
+            byId = entries;
+            maxId = newMaxId;
+            System.out.println("Serial index loaded " + added.size() + " instances in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+        }
+        instanceVersion = version;
+    }
+
+    private void setState(long instanceId, String stateId) {
+        Entry[] entries = byId;
+        if (instanceId >= 0 && instanceId < entries.length && entries[(int) instanceId] != null) {
+            entries[(int) instanceId].stateId = stateId;
+        }
+    }
+
+    /**
+     * Finds the instance with exactly this serial number.
+     *
+     * @return The instance, or null if no instance has the serial number
+     */
+    public ScanResult find(String serialNumber) throws SQLException {
+        Entry entry = serialNumber != null ? bySerial.get(serialNumber) : null;
+        return entry != null ? toResult(entry, WorkflowGraph.current()) : null;
+    }
+
+    /**
+     * Finds the instances whose serial number starts with the prefix, in serial number order.
+     *
+     * @param limit The maximum number of results
+     */
+    public List<ScanResult> findByPrefix(String prefix, int limit) throws SQLException {
+        List<ScanResult> results = new ArrayList<>();
+        if (prefix == null || limit <= 0) {
+            return results;
+        }
+        WorkflowGraph graph = WorkflowGraph.current();
+        for (Entry entry : bySerial.tailMap(prefix).values()) {
+            if (!entry.serialNumber.startsWith(prefix)) {
+                break;
+            }
+            results.add(toResult(entry, graph));
+            if (results.size() >= limit) {
+                break;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Number of indexed instances.
+     */
+    public int size() {
+        return bySerial.size();
+    }
+
+    private static ScanResult toResult(Entry entry, WorkflowGraph graph) {
+        String stateId = entry.stateId;
+        List<CompiledTransition> transitions = stateId != null ? graph.getTransitionsFrom(stateId) : List.of();
+        return new ScanResult(entry.id, entry.serialNumber, entry.product.id(), entry.product.name(),
+            entry.product.productNumber(), stateId, transitions);
+    }
+}
@@ -0,0 +1,124 @@
+package com.happyheal.workflow;
+
+import com.github.mustachejava.Mustache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Bounded LRU cache of compiled Mustache templates keyed by template content.
+ * The cache is limited both by the number of entries and by the total number
+ * of template characters it holds, so a few very large templates cannot push
+ * the working set of small ones out of memory.
+ */
+public class TemplateCache {
+
+    private final int maxEntries;
+    private final long maxTotalChars;
+    private final LinkedHashMap<String, Mustache> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalChars;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public TemplateCache(int maxEntries, long maxTotalChars) {
+        if (maxEntries < 1 || maxTotalChars < 1) {
+            throw new IllegalArgumentException("Template cache limits must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.maxTotalChars = maxTotalChars;
+    }
+
+    /**
+     * Returns the compiled template for the given content, compiling and caching it on a miss.
+     * Templates larger than the character budget are compiled but never cached.
+     *
+     * @param template The template source
+     * @param compiler Compiles the template source on a cache miss
+     * @return The compiled template
+     */
+    public Mustache get(String template, Function<String, Mustache> compiler) {
+        synchronized (this) {
+            Mustache cached = entries.get(template);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return cached;
+            }
+        }
+
+        misses.incrementAndGet();
+        // Compile outside the lock; a concurrent duplicate compile is harmless
+        Mustache compiled = compiler.apply(template);
+
+        if (template.length() <= maxTotalChars) {
+            synchronized (this) {
+                if (entries.put(template, compiled) == null) {
+                    totalChars += template.length();
+                }
+                evictIfNecessary();
+            }
+        }
+        return compiled;
+    }
+
+    private void evictIfNecessary() {
+        Iterator<Map.Entry<String, Mustache>> iterator = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || totalChars > maxTotalChars) && iterator.hasNext()) {
+            Map.Entry<String, Mustache> eldest = iterator.next();
+            totalChars -= eldest.getKey().length();
+            iterator.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Removes all cached templates. Counters are not reset.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        totalChars = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getTotalChars() {
+        return totalChars;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public long getMaxTotalChars() {
+        return maxTotalChars;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    @Override
+    public String toString() {
+        return "TemplateCache{" +
+                "size=" + size() +
+                ", totalChars=" + getTotalChars() +
+                ", hits=" + getHitCount() +
+                ", misses=" + getMissCount() +
+                ", evictions=" + getEvictionCount() +
+                '}';
+    }
+}
@@ -0,0 +1,24 @@
+package com.happyheal.workflow;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for compiling a Mustache template that was not in the template cache.
+ */
+@Name("com.happyheal.TemplateCompile")
+@Label("Template Compile")
+@Category({"HappyHeal", "Templates"})
+@Enabled(false)
+@StackTrace(false)
+class TemplateCompileEvent extends Event {
+
+    @Label("Template Length")
+    @DataAmount(DataAmount.BYTES)
+    int templateLength;
+}
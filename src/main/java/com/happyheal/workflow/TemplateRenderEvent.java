@@ -0,0 +1,28 @@
+package com.happyheal.workflow;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for rendering a template, including a cache lookup or compilation.
+ */
+@Name("com.happyheal.TemplateRender")
+@Label("Template Render")
+@Category({"HappyHeal", "Templates"})
+@Enabled(false)
+@StackTrace(false)
+class TemplateRenderEvent extends Event {
+
+    @Label("Template Length")
+    @DataAmount(DataAmount.BYTES)
+    int templateLength;
+
+    @Label("Output Length")
+    @DataAmount(DataAmount.BYTES)
+    int outputLength;
+}
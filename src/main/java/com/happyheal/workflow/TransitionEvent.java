@@ -0,0 +1,71 @@
+package com.happyheal.workflow;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for one transition call, covering lookups, actions and the state update.
+ * Enabled by the {@code happyheal.jfc} settings.
+ */
+@Name("com.happyheal.Transition")
+@Label("Workflow Transition")
+@Category({"HappyHeal", "Workflow"})
+@Description("Execution of a workflow transition for one or many product instances")
+@Enabled(false)
+@StackTrace(false)
+class TransitionEvent extends Event {
+
+    @Label("Transition Id")
+    long transitionId;
+
+    @Label("Transition Type")
+    String transitionType;
+
+    @Label("Instance Id")
+    @Description("The instance of a single transition, or the first of a bulk transition")
+    long instanceId;
+
+    @Label("Instances")
+    int instances;
+
+    @Label("Succeeded")
+    int succeeded;
+
+    @Label("Outcome")
+    @Description("succeeded, queued, failed or partial")
+    String outcome;
+
+    /**
+     * Starts timing a transition call.
+     */
+    static TransitionEvent begin(long transitionId, long instanceId, int instances) {
+        TransitionEvent event = new TransitionEvent();
+        event.begin();
+        event.transitionId = transitionId;
+        event.instanceId = instanceId;
+        event.instances = instances;
+        return event;
+    }
+
+    /**
+     * Ends the call and commits the event if it is enabled and long enough.
+     *
+     * @param queued Whether successful instances only had their side effects queued in the outbox
+     */
+    void finish(String type, int succeeded, boolean queued) {
+        end();
+        if (shouldCommit()) {
+            this.transitionType = type;
+            this.succeeded = succeeded;
+            this.outcome = succeeded == 0 ? "failed"
+                : succeeded < instances ? "partial"
+                : queued ? "queued" : "succeeded";
+            commit();
+        }
+    }
+}
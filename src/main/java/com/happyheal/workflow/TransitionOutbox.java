@@ -0,0 +1,345 @@
+package com.happyheal.workflow;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.happyheal.database.DatabaseManager;
+import com.happyheal.workflow.WorkflowGraph.CompiledTransition;
+import com.happyheal.workflow.action.ActionContext;
+import com.happyheal.workflow.action.ActionDispatcher;
+import com.happyheal.workflow.action.TransitionAction;
+import com.happyheal.workflow.action.TransitionActions;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Delivers transition side effects after the state change, from the {@code transition_outbox} table.
+ *
+ * <p>With {@code happyheal.outbox.enabled}, transitions whose action
+ * {@link com.happyheal.workflow.action.TransitionAction#supportsOutbox() supports it} store
+ * the new state and one outbox row per instance in a single transaction and return right
+ * away. A background thread then executes the actions in batches of
+ * {@code happyheal.outbox.batchSize}. Delivered rows are deleted; failed rows are retried
+ * with growing delays and marked {@code dead} after {@code happyheal.outbox.maxAttempts}.</p>
+ *
+ * <p>Delivery is at least once: a crash after the action but before the row is deleted
+ * delivers it again. Every row carries an idempotency key, which HTTP actions send as the
+ * {@code Idempotency-Key} header, so partners can drop the duplicate.</p>
+ *
+ * <p>Each row snapshots the action type and setup it was enqueued with, so it is delivered
+ * as defined at transition time even if a later import or sync changed or removed the
+ * transition.</p>
+ */
+public final class TransitionOutbox {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final TypeReference<Map<String, Object>> VARIABLES_TYPE = new TypeReference<>() {};
+
+    private static final int BATCH_SIZE = Math.max(1, Integer.getInteger("happyheal.outbox.batchSize", 500));
+    private static final int MAX_ATTEMPTS = Math.max(1, Integer.getInteger("happyheal.outbox.maxAttempts", 10));
+    private static final long POLL_MS = Math.max(10, Long.getLong("happyheal.outbox.pollMs", 500L));
+    private static final long RETRY_DELAY_MS = Long.getLong("happyheal.outbox.retryDelayMs", 1000L);
+    private static final long MAX_RETRY_DELAY_MS = Long.getLong("happyheal.outbox.maxRetryDelayMs", 300_000L);
+
+    private static ScheduledExecutorService dispatcher;
+    private static final AtomicBoolean wakeUpQueued = new AtomicBoolean();
+
+    /**
+     * Rows waiting for delivery and rows that gave up.
+     */
+    public record OutboxStats(long pending, long dead) {}
+
+    private record Entry(long id, String idempotencyKey, long instanceId, long transitionId, String actionType,
+                         String setupJson, Map<String, Object> variables, int attempts) {}
+
+    /**
+     * What delivering a group of rows runs, or why it cannot.
+     */
+    private record Action(String type, TransitionAction handler, ActionSpec spec, String error) {}
+
+    private TransitionOutbox() {}
+
+    public static boolean isEnabled() {
+        return Boolean.getBoolean("happyheal.outbox.enabled");
+    }
+
+    /**
+     * Adds one row per context on the given connection, inside the caller's transaction.
+     */
+    static void enqueue(Connection conn, CompiledTransition transition, List<ActionContext> contexts) throws Exception {
+        String sql = """
+            INSERT INTO transition_outbox (idempotency_key, instance_id, transition_id, action_type, setup_json,
+                                           variables_json, next_attempt_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?)
+        """;
+        long now = System.currentTimeMillis();
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (ActionContext context : contexts) {
+                pstmt.setString(1, UUID.randomUUID().toString());
+                pstmt.setLong(2, context.instanceId());
+                pstmt.setLong(3, transition.id());
+                pstmt.setString(4, transition.type());
+                pstmt.setString(5, transition.setupJson());
+                pstmt.setString(6, objectMapper.writeValueAsString(context.variables()));
+                pstmt.setLong(7, now);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    /**
+     * Starts the background delivery if the outbox is enabled, e.g. to deliver rows left by the last run.
+     */
+    public static synchronized void start() {
+        if (!isEnabled() || dispatcher != null) {
+            return;
+        }
+        dispatcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "transition-outbox");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dispatcher.scheduleWithFixedDelay(TransitionOutbox::deliverDue, 0, POLL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts a delivery round now instead of at the next poll.
+     */
+    static synchronized void wakeUp() {
+        start();
+        if (dispatcher != null && wakeUpQueued.compareAndSet(false, true)) {
+            dispatcher.execute(() -> {
+                wakeUpQueued.set(false);
+                deliverDue();
+            });
+        }
+    }
+
+    /**
+     * Stops the background delivery, letting the current round finish. Undelivered rows stay
+     * in the table for the next start.
+     */
+    public static void shutdown() {
+        ScheduledExecutorService executor;
+        synchronized (TransitionOutbox.class) {
+            executor = dispatcher;
+            dispatcher = null;
+        }
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(Long.getLong("happyheal.transition.shutdownTimeoutMs", 10_000), TimeUnit.MILLISECONDS)) {
+                System.err.println("Outbox delivery still running at shutdown");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+        }
+    }
+
+    public static OutboxStats getStats() throws SQLException {
+        try (Connection conn = DatabaseManager.getReadConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("""
+                 SELECT COALESCE(SUM(status = 'pending'), 0), COALESCE(SUM(status = 'dead'), 0) FROM transition_outbox
+             """)) {
+            rs.next();
+            return new OutboxStats(rs.getLong(1), rs.getLong(2));
+        }
+    }
+
+    /**
+     * Gives all dead rows another full set of attempts, e.g. after a partner fixed an outage.
+     *
+     * @return The number of rows requeued
+     */
+    public static int requeueDead() throws SQLException {
+        int requeued;
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(
+                 "UPDATE transition_outbox SET status = 'pending', attempts = 0, next_attempt_at = ? WHERE status = 'dead'")) {
+            pstmt.setLong(1, System.currentTimeMillis());
+            requeued = pstmt.executeUpdate();
+        }
+        if (requeued > 0) {
+            wakeUp();
+        }
+        return requeued;
+    }
+
+    private static void deliverDue() {
+        try {
+            List<Entry> due;
+            do {
+                due = loadDue();
+                if (!due.isEmpty()) {
+                    deliver(due);
+                }
+            } while (due.size() == BATCH_SIZE && !Thread.currentThread().isInterrupted());
+        } catch (Exception e) {
+            // Keep the scheduled task alive; the rows are tried again at the next poll
+            System.err.println("Error delivering transition outbox: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    private static List<Entry> loadDue() throws Exception {
+        String sql = """
+            SELECT id, idempotency_key, instance_id, transition_id, action_type, setup_json, variables_json, attempts
+            FROM transition_outbox
+            WHERE status = 'pending' AND next_attempt_at <= ?
+            ORDER BY id
+            LIMIT ?
+        """;
+        List<Entry> due = new ArrayList<>();
+        try (Connection conn = DatabaseManager.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setLong(1, System.currentTimeMillis());
+            pstmt.setInt(2, BATCH_SIZE);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    due.add(new Entry(rs.getLong("id"), rs.getString("idempotency_key"), rs.getLong("instance_id"),
+                        rs.getLong("transition_id"), rs.getString("action_type"), rs.getString("setup_json"),
+                        objectMapper.readValue(rs.getString("variables_json"), VARIABLES_TYPE),
+                        rs.getInt("attempts")));
+                }
+            }
+        }
+        return due;
+    }
+
+    private static void deliver(List<Entry> due) throws Exception {
+        // Rows of one transition enqueued with the same setup are executed together
+        Map<List<Object>, List<Entry>> byAction = new LinkedHashMap<>();
+        for (Entry entry : due) {
+            byAction.computeIfAbsent(Arrays.asList(entry.transitionId(), entry.actionType(), entry.setupJson()),
+                key -> new ArrayList<>()).add(entry);
+        }
+
+        WorkflowGraph graph = WorkflowGraph.current();
+        List<Long> delivered = new ArrayList<>();
+        List<Entry> failed = new ArrayList<>();
+        List<String> errors = new ArrayList<>();
+        for (List<Entry> entries : byAction.values()) {
+            Action action = resolve(graph, entries.get(0));
+            if (action.spec() == null) {
+                for (Entry entry : entries) {
+                    // Retrying cannot help; keep the row for inspection
+                    failed.add(new Entry(entry.id(), entry.idempotencyKey(), entry.instanceId(), entry.transitionId(),
+                        entry.actionType(), entry.setupJson(), entry.variables(), MAX_ATTEMPTS));
+                    errors.add(action.error());
+                }
+                continue;
+            }
+
+            List<ActionContext> contexts = new ArrayList<>(entries.size());
+            for (Entry entry : entries) {
+                contexts.add(new ActionContext(entry.instanceId(), action.spec(), entry.variables(), entry.idempotencyKey()));
+            }
+            boolean[] outcomes = ActionDispatcher.executeAll(action.handler(), contexts, WorkflowExecutor.getAsyncExecutor());
+            for (int i = 0; i < entries.size(); i++) {
+                if (outcomes[i]) {
+                    delivered.add(entries.get(i).id());
+                } else {
+                    failed.add(entries.get(i));
+                    errors.add("Action failed: " + action.type());
+                }
+            }
+        }
+
+        recordOutcomes(delivered, failed, errors);
+        System.out.println("Outbox delivered " + delivered.size() + " of " + due.size() + " side effects");
+    }
+
+    /**
+     * Uses the compiled transition while it still matches the row's snapshot, and parses the
+     * snapshot otherwise. Rows without a snapshot, from before it was stored, use the transition.
+     */
+    private static Action resolve(WorkflowGraph graph, Entry entry) {
+        CompiledTransition transition = graph.getTransition(entry.transitionId());
+        if (entry.actionType() == null
+                || (transition != null && transition.type().equals(entry.actionType())
+                    && Objects.equals(transition.setupJson(), entry.setupJson()))) {
+            if (transition == null) {
+                return new Action(null, null, null, "Workflow transition not found: " + entry.transitionId());
+            }
+            return new Action(transition.type(), transition.handler(), transition.action(),
+                transition.isValid() ? null : "Invalid transition setup: " + transition.error());
+        }
+
+        TransitionAction handler = TransitionActions.get(entry.actionType());
+        try {
+            return new Action(entry.actionType(), handler, WorkflowGraph.parseSetup(handler, entry.actionType(), entry.setupJson()), null);
+        } catch (Exception e) {
+            return new Action(entry.actionType(), handler, null, "Invalid transition setup: " + e.getMessage());
+        }
+    }
+
+    private static void recordOutcomes(List<Long> delivered, List<Entry> failed, List<String> errors) throws Exception {
+        long now = System.currentTimeMillis();
+        try (Connection conn = DatabaseManager.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                if (!delivered.isEmpty()) {
+                    try (PreparedStatement pstmt = conn.prepareStatement(
+                            "DELETE FROM transition_outbox WHERE id IN (SELECT value FROM json_each(?))")) {
+                        pstmt.setString(1, objectMapper.writeValueAsString(delivered));
+                        pstmt.executeUpdate();
+                    }
+                }
+                if (!failed.isEmpty()) {
+                    try (PreparedStatement pstmt = conn.prepareStatement("""
+                            UPDATE transition_outbox SET attempts = ?, status = ?, next_attempt_at = ?, last_error = ?
+                            WHERE id = ?
+                        """)) {
+                        for (int i = 0; i < failed.size(); i++) {
+                            Entry entry = failed.get(i);
+                            int attempts = entry.attempts() + 1;
+                            boolean dead = attempts >= MAX_ATTEMPTS;
+                            if (dead) {
+                                System.err.println("Giving up on outbox entry " + entry.id() + " for instance "
+                                    + entry.instanceId() + ": " + errors.get(i));
+                            }
+                            pstmt.setInt(1, attempts);
+                            pstmt.setString(2, dead ? "dead" : "pending");
+                            pstmt.setLong(3, now + retryDelayMillis(attempts));
+                            pstmt.setString(4, errors.get(i));
+                            pstmt.setLong(5, entry.id());
+                            pstmt.addBatch();
+                        }
+                        pstmt.executeBatch();
+                    }
+                }
+                conn.commit();
+            } catch (Exception e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    private static long retryDelayMillis(int attempts) {
+        long delay = RETRY_DELAY_MS << Math.min(attempts - 1, 30);
+        return delay > 0 ? Math.min(delay, MAX_RETRY_DELAY_MS) : MAX_RETRY_DELAY_MS;
+    }
+}
@@ -0,0 +1,20 @@
+package com.happyheal.workflow;
+
+/**
+ * Outcome of a workflow transition for a single product instance.
+ *
+ * @param instanceId The product instance the transition was executed for
+ * @param success Whether the action succeeded and the new state was stored
+ * @param newStateId The state the instance moved to, or null if the transition failed
+ * @param error Why the transition failed, or null on success
+ */
+public record TransitionResult(long instanceId, boolean success, String newStateId, String error) {
+
+    public static TransitionResult succeeded(long instanceId, String newStateId) {
+        return new TransitionResult(instanceId, true, newStateId, null);
+    }
+
+    public static TransitionResult failed(long instanceId, String error) {
+        return new TransitionResult(instanceId, false, null, error);
+    }
+}
@@ -1,39 +1,62 @@
 package com.happyheal.workflow;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.happyheal.database.DatabaseManager;
-import com.happyheal.model.*;
-import javafx.scene.control.Alert;
-import javafx.scene.control.ButtonType;
+import com.happyheal.metrics.Counter;
+import com.happyheal.metrics.LatencyHistogram;
+import com.happyheal.metrics.MetricsRegistry;
+import com.happyheal.workflow.WorkflowGraph.CompiledTransition;
+import com.happyheal.workflow.action.ActionContext;
+import com.happyheal.workflow.action.ActionDispatcher;
 
-import javax.mail.*;
-import javax.mail.internet.*;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
+import java.lang.reflect.Method;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Executes workflow transitions and their associated actions.
- * Handles HTTP calls, file operations, email sending, and message boxes.
+ * Actions are {@link com.happyheal.workflow.action.TransitionAction}s looked up by transition type.
  */
 public class WorkflowExecutor {
     
-    private static final ObjectMapper objectMapper = new ObjectMapper();
-    private static final HttpClient httpClient = HttpClient.newHttpClient();
+    // Executor for executeTransitionAsync; created on first use unless one is set
+    private static volatile Executor asyncExecutor;
+    private static ExecutorService defaultAsyncExecutor;
+    
+    // Transitions that fail before their type is known are counted under this type
+    private static final String UNKNOWN_TYPE = "unknown";
+    private static final Map<String, TransitionMetrics> transitionMetrics = new ConcurrentHashMap<>();
+    
+    /**
+     * Instances per outcome and call latency of one transition type.
+     */
+    private record TransitionMetrics(Counter succeeded, Counter queued, Counter failed, LatencyHistogram latency) {
+        static TransitionMetrics forType(String type) {
+            String name = "happyheal_transitions_total";
+            String help = "Instances moved by transitions, by type and outcome";
+            return new TransitionMetrics(
+                MetricsRegistry.counter(name, help, "type", type, "outcome", "succeeded"),
+                MetricsRegistry.counter(name, help, "type", type, "outcome", "queued"),
+                MetricsRegistry.counter(name, help, "type", type, "outcome", "failed"),
+                MetricsRegistry.histogram("happyheal_transition_seconds", "Time to execute a transition call", "type", type));
+        }
+    }
     
     /**
      * Executes a workflow transition for a product instance.
@@ -43,289 +66,453 @@ public class WorkflowExecutor {
      * @return true if the transition was executed successfully
      */
     public static boolean executeTransition(Long instanceId, Long transitionId) {
-        try (Connection conn = DatabaseManager.getConnection()) {
-            // Get product instance details
-            ProductInstanceInfo instanceInfo = getProductInstanceInfo(conn, instanceId);
-            if (instanceInfo == null) {
-                System.err.println("Product instance not found: " + instanceId);
-                return false;
-            }
-            
-            // Get transition details
-            WorkflowTransition transition = getTransitionDetails(conn, transitionId);
+        if (instanceId == null || transitionId == null) {
+            System.err.println("Instance and transition must be specified");
+            return false;
+        }
+        return executeTransitions(List.of(instanceId), transitionId).get(0).success();
+    }
+    
+    /**
+     * Executes a workflow transition for many product instances at once, e.g. a whole delivery.
+     * Instance details are loaded with a single query, the action runs in batches and in parallel
+     * as far as it declares support for it, and the new state of all successful instances is
+     * stored in one statement. With the {@link TransitionOutbox} enabled, actions that support it
+     * are delivered in the background after the new states are stored. Instances fail whose
+     * group's effective workflow (see {@code product_group_workflows}) is not the transition's.
+     * 
+     * @param instanceIds The IDs of the product instances
+     * @param transitionId The ID of the workflow transition
+     * @return One result per instance ID, in iteration order of {@code instanceIds}
+     */
+    public static List<TransitionResult> executeTransitions(Collection<Long> instanceIds, long transitionId) {
+        List<TransitionResult> results = new ArrayList<>(instanceIds.size());
+        if (instanceIds.isEmpty()) {
+            return results;
+        }
+        long start = System.nanoTime();
+        Long firstId = instanceIds.iterator().next();
+        TransitionEvent event = TransitionEvent.begin(transitionId, firstId != null ? firstId : -1, instanceIds.size());
+        
+        CompiledTransition transition;
+        Map<Long, ProductInstanceInfo> instances;
+        
+        try {
+            transition = WorkflowGraph.current().getTransition(transitionId);
             if (transition == null) {
-                System.err.println("Workflow transition not found: " + transitionId);
-                return false;
+                return recordMetrics(UNKNOWN_TYPE,
+                    failAll(instanceIds, "Workflow transition not found: " + transitionId), false, start, event);
             }
-            
-            // Create context for template processing
-            Map<String, Object> context = MustacheTemplateEngine.createProductInstanceContext(
-                instanceInfo.productName,
-                instanceInfo.serialNumber,
-                instanceInfo.customerMail,
-                instanceInfo.customerName,
-                instanceInfo.productNumber,
-                instanceInfo.purchaseDate != null ? instanceInfo.purchaseDate.format(DateTimeFormatter.ISO_LOCAL_DATE) : null
-            );
-            
-            // Execute the transition action
-            boolean success = executeTransitionAction(transition, context);
-            
-            if (success) {
-                // Update product instance state
-                updateProductInstanceState(conn, instanceId, transition.getTo());
-                System.out.println("Transition executed successfully: " + transition.getType());
-                return true;
-            } else {
-                System.err.println("Failed to execute transition: " + transition.getType());
-                return false;
+            if (!transition.isValid()) {
+                return recordMetrics(transition.type(),
+                    failAll(instanceIds, "Invalid transition setup: " + transition.error()), false, start, event);
             }
             
+            // Lookups run on a reader so they don't wait for the writer
+            try (Connection conn = DatabaseManager.getReadConnection()) {
+                instances = getProductInstanceInfos(conn, instanceIds);
+            }
         } catch (Exception e) {
-            System.err.println("Error executing workflow transition: " + e.getMessage());
+            System.err.println("Error loading workflow transition: " + e.getMessage());
             e.printStackTrace();
-            return false;
+            return recordMetrics(UNKNOWN_TYPE, failAll(instanceIds, e.getMessage()), false, start, event);
         }
-    }
-    
-    private static ProductInstanceInfo getProductInstanceInfo(Connection conn, Long instanceId) throws Exception {
-        String sql = """
-            SELECT pi.serial_number, pi.customer_mail, pi.customer_name, pi.purchase_date,
-                   p.name as product_name, p.product_number
-            FROM product_instances pi
-            JOIN products p ON pi.product_id = p.id
-            WHERE pi.id = ?
-        """;
         
-        PreparedStatement pstmt = conn.prepareStatement(sql);
-        pstmt.setLong(1, instanceId);
-        ResultSet rs = pstmt.executeQuery();
-        
-        if (rs.next()) {
-            ProductInstanceInfo info = new ProductInstanceInfo();
-            info.serialNumber = rs.getString("serial_number");
-            info.customerMail = rs.getString("customer_mail");
-            info.customerName = rs.getString("customer_name");
-            info.productName = rs.getString("product_name");
-            info.productNumber = rs.getString("product_number");
-            
-            String purchaseDateStr = rs.getString("purchase_date");
-            if (purchaseDateStr != null) {
-                info.purchaseDate = LocalDateTime.parse(purchaseDateStr, DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+        List<ActionContext> contexts = new ArrayList<>(instances.size());
+        for (Long instanceId : instanceIds) {
+            ProductInstanceInfo instanceInfo = instanceId != null ? instances.get(instanceId) : null;
+            if (instanceInfo != null && workflowMismatch(instanceInfo, transition) == null) {
+                contexts.add(createActionContext(instanceId, transition, instanceInfo));
             }
-            
-            return info;
         }
         
-        return null;
-    }
-    
-    private static WorkflowTransition getTransitionDetails(Connection conn, Long transitionId) throws Exception {
-        String sql = "SELECT type, from_state, to_state, setup_json FROM workflow_transitions WHERE id = ?";
+        if (TransitionOutbox.isEnabled() && transition.handler().supportsOutbox()) {
+            return recordMetrics(transition.type(),
+                storeWithOutbox(instanceIds, transition, instances, contexts), true, start, event);
+        }
         
-        PreparedStatement pstmt = conn.prepareStatement(sql);
-        pstmt.setLong(1, transitionId);
-        ResultSet rs = pstmt.executeQuery();
+        // Execute the actions without holding a connection
+        boolean[] outcomes = ActionDispatcher.executeAll(transition.handler(), contexts, getAsyncExecutor());
         
-        if (rs.next()) {
-            WorkflowTransition transition = new WorkflowTransition();
-            transition.setId(transitionId);
-            transition.setType(rs.getString("type"));
-            transition.setFrom(rs.getString("from_state"));
-            transition.setTo(rs.getString("to_state"));
-            
-            String setupJson = rs.getString("setup_json");
-            if (setupJson != null) {
-                Map<String, Object> setup = objectMapper.readValue(setupJson, Map.class);
-                transition.setSetup(setup);
+        List<Long> succeeded = new ArrayList<>();
+        int contextIndex = 0;
+        for (Long instanceId : instanceIds) {
+            ProductInstanceInfo instanceInfo = instanceId != null ? instances.get(instanceId) : null;
+            String mismatch;
+            if (instanceInfo == null) {
+                System.err.println("Product instance not found: " + instanceId);
+                results.add(TransitionResult.failed(instanceId != null ? instanceId : -1, "Product instance not found"));
+            } else if ((mismatch = workflowMismatch(instanceInfo, transition)) != null) {
+                results.add(TransitionResult.failed(instanceId, mismatch));
+            } else if (outcomes[contextIndex++]) {
+                succeeded.add(instanceId);
+                results.add(TransitionResult.succeeded(instanceId, transition.toStateId()));
+            } else {
+                System.err.println("Failed to execute transition " + transition.type() + " for instance " + instanceId);
+                results.add(TransitionResult.failed(instanceId, "Action failed: " + transition.type()));
             }
-            
-            return transition;
         }
         
-        return null;
+        if (!succeeded.isEmpty()) {
+            try (Connection conn = DatabaseManager.getConnection()) {
+                updateProductInstanceStates(conn, succeeded, transition.toStateId());
+            } catch (Exception e) {
+                System.err.println("Error storing workflow states: " + e.getMessage());
+                e.printStackTrace();
+                results.replaceAll(result -> result.success()
+                    ? TransitionResult.failed(result.instanceId(), "Failed to store new state: " + e.getMessage())
+                    : result);
+                return recordMetrics(transition.type(), results, false, start, event);
+            }
+            SerialIndex.statesChanged(succeeded, transition.toStateId());
+        }
+        
+        System.out.println("Transition " + transition.type() + " executed for "
+            + succeeded.size() + " of " + instanceIds.size() + " instances");
+        return recordMetrics(transition.type(), results, false, start, event);
     }
     
-    private static boolean executeTransitionAction(WorkflowTransition transition, Map<String, Object> context) {
-        switch (transition.getType().toLowerCase()) {
-            case "http":
-                return executeHttpAction(transition, context);
-            case "file":
-                return executeFileAction(transition, context);
-            case "mail":
-                return executeMailAction(transition, context);
-            case "messagebox":
-                return executeMessageBoxAction(transition, context);
-            case "noaction":
-                return true; // No action required
-            default:
-                System.err.println("Unknown transition type: " + transition.getType());
-                return false;
+    /**
+     * Counts the outcomes of one transition call, records its latency and commits its JFR event.
+     * 
+     * @param queued Whether successful instances only had their side effects queued in the outbox
+     */
+    private static List<TransitionResult> recordMetrics(String type, List<TransitionResult> results, boolean queued,
+                                                        long start, TransitionEvent event) {
+        TransitionMetrics metrics = transitionMetrics.computeIfAbsent(type, TransitionMetrics::forType);
+        int succeeded = 0;
+        for (TransitionResult result : results) {
+            if (result.success()) {
+                succeeded++;
+            }
         }
+        (queued ? metrics.queued() : metrics.succeeded()).add(succeeded);
+        metrics.failed().add(results.size() - succeeded);
+        metrics.latency().record(System.nanoTime() - start);
+        event.finish(type, succeeded, queued);
+        return results;
     }
     
-    private static boolean executeHttpAction(WorkflowTransition transition, Map<String, Object> context) {
+    /**
+     * Stores the new states together with the outbox rows of their side effects in one transaction.
+     */
+    private static List<TransitionResult> storeWithOutbox(Collection<Long> instanceIds, CompiledTransition transition,
+                                                          Map<Long, ProductInstanceInfo> instances, List<ActionContext> contexts) {
         try {
-            String endpoint = transition.getEndpoint();
-            String body = transition.getBody();
-            
-            if (endpoint == null) {
-                System.err.println("HTTP endpoint not specified");
-                return false;
-            }
-            
-            // Process templates
-            endpoint = MustacheTemplateEngine.processTemplate(endpoint, context);
-            if (body != null) {
-                body = MustacheTemplateEngine.processTemplate(body, context);
-            }
-            
-            // Build HTTP request
-            HttpRequest.Builder requestBuilder = HttpRequest.newBuilder()
-                .uri(URI.create(endpoint))
-                .header("Content-Type", "application/json");
-            
-            if (body != null) {
-                requestBuilder.POST(HttpRequest.BodyPublishers.ofString(body));
+            storeStatesAndOutbox(transition, contexts);
+        } catch (Exception e) {
+            System.err.println("Error storing workflow states: " + e.getMessage());
+            e.printStackTrace();
+            return failAll(instanceIds, "Failed to store new state: " + e.getMessage());
+        }
+        
+        List<TransitionResult> results = new ArrayList<>(instanceIds.size());
+        for (Long instanceId : instanceIds) {
+            ProductInstanceInfo instanceInfo = instanceId != null ? instances.get(instanceId) : null;
+            String mismatch = instanceInfo != null ? workflowMismatch(instanceInfo, transition) : null;
+            if (mismatch != null) {
+                results.add(TransitionResult.failed(instanceId, mismatch));
+            } else if (instanceInfo != null) {
+                results.add(TransitionResult.succeeded(instanceId, transition.toStateId()));
             } else {
-                requestBuilder.GET();
+                System.err.println("Product instance not found: " + instanceId);
+                results.add(TransitionResult.failed(instanceId != null ? instanceId : -1, "Product instance not found"));
             }
-            
-            HttpRequest request = requestBuilder.build();
-            
-            // Send request
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            
-            if (response.statusCode() >= 200 && response.statusCode() < 300) {
-                System.out.println("HTTP request successful: " + response.statusCode());
-                return true;
-            } else {
-                System.err.println("HTTP request failed: " + response.statusCode() + " - " + response.body());
-                return false;
+        }
+        System.out.println("Transition " + transition.type() + " stored for " + contexts.size() + " of "
+            + instanceIds.size() + " instances, side effects queued");
+        return results;
+    }
+    
+    private static void storeStatesAndOutbox(CompiledTransition transition, List<ActionContext> contexts) throws Exception {
+        if (contexts.isEmpty()) {
+            return;
+        }
+        List<Long> instanceIds = new ArrayList<>(contexts.size());
+        for (ActionContext context : contexts) {
+            instanceIds.add(context.instanceId());
+        }
+        try (Connection conn = DatabaseManager.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                updateProductInstanceStates(conn, instanceIds, transition.toStateId());
+                TransitionOutbox.enqueue(conn, transition, contexts);
+                conn.commit();
+            } catch (Exception e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
             }
-            
-        } catch (Exception e) {
-            System.err.println("Error executing HTTP action: " + e.getMessage());
-            e.printStackTrace();
-            return false;
         }
+        SerialIndex.statesChanged(instanceIds, transition.toStateId());
+        TransitionOutbox.wakeUp();
     }
     
-    private static boolean executeFileAction(WorkflowTransition transition, Map<String, Object> context) {
-        try {
-            String filePath = transition.getPath();
-            String content = transition.getContent();
-            Boolean append = transition.getAppend();
-            
-            if (filePath == null || content == null) {
-                System.err.println("File path or content not specified");
-                return false;
+    /**
+     * Executes a workflow transition asynchronously. Lookups, blocking actions and the state
+     * update run on the async executor; actions with non-blocking I/O such as HTTP do not
+     * occupy a thread while a request is in flight.
+     * 
+     * @param instanceId The ID of the product instance
+     * @param transitionId The ID of the workflow transition
+     * @return A future that always completes normally with the result of the transition
+     */
+    public static CompletableFuture<TransitionResult> executeTransitionAsync(long instanceId, long transitionId) {
+        Executor executor = getAsyncExecutor();
+        long start = System.nanoTime();
+        TransitionEvent event = TransitionEvent.begin(transitionId, instanceId, 1);
+        return CompletableFuture.supplyAsync(() -> prepareTransition(instanceId, transitionId), executor)
+            .thenCompose(prepared -> {
+                String type = prepared.transition().type();
+                if (TransitionOutbox.isEnabled() && prepared.transition().handler().supportsOutbox()) {
+                    return CompletableFuture.supplyAsync(() -> queueTransition(prepared), executor)
+                        .thenApply(result -> recordMetrics(type, List.of(result), true, start, event).get(0));
+                }
+                return prepared.transition().handler().executeAsync(prepared.context(), executor)
+                    .thenApplyAsync(success -> completeTransition(instanceId, prepared.transition(), success), executor)
+                    .thenApply(result -> recordMetrics(type, List.of(result), false, start, event).get(0));
+            })
+            .exceptionally(e -> {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                System.err.println("Error executing workflow transition: " + cause.getMessage());
+                TransitionResult failed = TransitionResult.failed(instanceId, cause.getMessage());
+                return recordMetrics(UNKNOWN_TYPE, List.of(failed), false, start, event).get(0);
+            });
+    }
+    
+    /**
+     * Returns the executor used by {@link #executeTransitionAsync}. By default this is a
+     * virtual-thread-per-task executor on Java 21 and newer, and a fixed pool of platform
+     * threads ({@code happyheal.transition.asyncThreads}) on older runtimes or when
+     * {@code happyheal.transition.platformThreads} is set.
+     */
+    public static Executor getAsyncExecutor() {
+        Executor executor = asyncExecutor;
+        if (executor == null) {
+            synchronized (WorkflowExecutor.class) {
+                if (asyncExecutor == null) {
+                    defaultAsyncExecutor = createDefaultAsyncExecutor();
+                    asyncExecutor = defaultAsyncExecutor;
+                }
+                executor = asyncExecutor;
             }
-            
-            // Process templates
-            filePath = MustacheTemplateEngine.processTemplate(filePath, context);
-            content = MustacheTemplateEngine.processTemplate(content, context);
-            
-            Path path = Paths.get(filePath);
-            
-            // Create directories if they don't exist
-            if (path.getParent() != null) {
-                Files.createDirectories(path.getParent());
+        }
+        return executor;
+    }
+    
+    /**
+     * Replaces the executor used by {@link #executeTransitionAsync}; null restores the default.
+     * The caller remains responsible for shutting down an executor it sets.
+     */
+    public static synchronized void setAsyncExecutor(Executor executor) {
+        asyncExecutor = executor;
+    }
+    
+    /**
+     * Stops the default async executor, waiting briefly for in-flight transitions to finish.
+     */
+    public static void shutdown() {
+        ExecutorService executor;
+        synchronized (WorkflowExecutor.class) {
+            executor = defaultAsyncExecutor;
+            defaultAsyncExecutor = null;
+            if (asyncExecutor == executor) {
+                asyncExecutor = null;
             }
-            
-            // Write to file
-            if (Boolean.TRUE.equals(append)) {
-                Files.writeString(path, content + System.lineSeparator(), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
-            } else {
-                Files.writeString(path, content);
+        }
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(Long.getLong("happyheal.transition.shutdownTimeoutMs", 10_000), TimeUnit.MILLISECONDS)) {
+                System.err.println("Async transitions still running at shutdown: " + executor.shutdownNow().size() + " queued");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+        }
+    }
+    
+    private static ExecutorService createDefaultAsyncExecutor() {
+        if (!Boolean.getBoolean("happyheal.transition.platformThreads")) {
+            try {
+                // Looked up reflectively so the application still builds and runs on Java 17
+                Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return (ExecutorService) factory.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                // Virtual threads are not available on this runtime
             }
-            
-            System.out.println("File action completed: " + filePath);
-            return true;
-            
-        } catch (Exception e) {
-            System.err.println("Error executing file action: " + e.getMessage());
-            e.printStackTrace();
-            return false;
         }
+        int threads = Integer.getInteger("happyheal.transition.asyncThreads",
+            Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "transition-async-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newFixedThreadPool(threads, threadFactory);
     }
     
-    private static boolean executeMailAction(WorkflowTransition transition, Map<String, Object> context) {
+    private record PreparedTransition(CompiledTransition transition, ActionContext context) {}
+    
+    private static PreparedTransition prepareTransition(long instanceId, long transitionId) {
         try {
-            String from = transition.getFromEmail();
-            String to = transition.getToEmail();
-            String subject = transition.getSubject();
-            String body = transition.getBody();
-            
-            if (from == null || to == null || subject == null) {
-                System.err.println("Email parameters not fully specified");
-                return false;
+            CompiledTransition transition = WorkflowGraph.current().getTransition(transitionId);
+            if (transition == null) {
+                throw new IllegalArgumentException("Workflow transition not found: " + transitionId);
             }
-            
-            // Process templates
-            from = MustacheTemplateEngine.processTemplate(from, context);
-            to = MustacheTemplateEngine.processTemplate(to, context);
-            subject = MustacheTemplateEngine.processTemplate(subject, context);
-            if (body != null) {
-                body = MustacheTemplateEngine.processTemplate(body, context);
+            if (!transition.isValid()) {
+                throw new IllegalArgumentException("Invalid transition setup: " + transition.error());
             }
-            
-            // For demonstration purposes, we'll just log the email action
-            // In a real implementation, you would configure SMTP settings
-            System.out.println("EMAIL ACTION:");
-            System.out.println("From: " + from);
-            System.out.println("To: " + to);
-            System.out.println("Subject: " + subject);
-            System.out.println("Body: " + (body != null ? body : "(no body)"));
-            System.out.println("--- EMAIL END ---");
-            
-            return true;
-            
+            ProductInstanceInfo instanceInfo;
+            try (Connection conn = DatabaseManager.getReadConnection()) {
+                instanceInfo = getProductInstanceInfos(conn, List.of(instanceId)).get(instanceId);
+            }
+            if (instanceInfo == null) {
+                throw new IllegalArgumentException("Product instance not found: " + instanceId);
+            }
+            String mismatch = workflowMismatch(instanceInfo, transition);
+            if (mismatch != null) {
+                throw new IllegalArgumentException(mismatch);
+            }
+            return new PreparedTransition(transition, createActionContext(instanceId, transition, instanceInfo));
+        } catch (RuntimeException e) {
+            throw e;
         } catch (Exception e) {
-            System.err.println("Error executing mail action: " + e.getMessage());
-            e.printStackTrace();
-            return false;
+            throw new CompletionException(e);
         }
     }
     
-    private static boolean executeMessageBoxAction(WorkflowTransition transition, Map<String, Object> context) {
+    private static TransitionResult queueTransition(PreparedTransition prepared) {
         try {
-            String content = transition.getContent();
-            
-            if (content == null) {
-                System.err.println("Message content not specified");
-                return false;
-            }
-            
-            // Process template
-            content = MustacheTemplateEngine.processTemplate(content, context);
-            
-            // Show JavaFX alert dialog
-            javafx.application.Platform.runLater(() -> {
-                Alert alert = new Alert(Alert.AlertType.INFORMATION);
-                alert.setTitle("Workflow Notification");
-                alert.setHeaderText("Product Status Update");
-                alert.setContentText(content);
-                alert.showAndWait();
-            });
-            
-            System.out.println("Message box displayed: " + content);
-            return true;
-            
+            storeStatesAndOutbox(prepared.transition(), List.of(prepared.context()));
         } catch (Exception e) {
-            System.err.println("Error executing message box action: " + e.getMessage());
-            e.printStackTrace();
-            return false;
+            throw new CompletionException(e);
+        }
+        return TransitionResult.succeeded(prepared.context().instanceId(), prepared.transition().toStateId());
+    }
+    
+    private static TransitionResult completeTransition(long instanceId, CompiledTransition transition, boolean success) {
+        if (!success) {
+            System.err.println("Failed to execute transition: " + transition.type());
+            return TransitionResult.failed(instanceId, "Action failed: " + transition.type());
+        }
+        try (Connection conn = DatabaseManager.getConnection()) {
+            updateProductInstanceStates(conn, List.of(instanceId), transition.toStateId());
+        } catch (Exception e) {
+            throw new CompletionException(e);
         }
+        SerialIndex.statesChanged(List.of(instanceId), transition.toStateId());
+        System.out.println("Transition executed successfully: " + transition.type());
+        return TransitionResult.succeeded(instanceId, transition.toStateId());
     }
     
-    private static void updateProductInstanceState(Connection conn, Long instanceId, String newStateId) throws Exception {
-        String sql = "UPDATE product_instances SET current_state_id = ? WHERE id = ?";
-        PreparedStatement pstmt = conn.prepareStatement(sql);
-        pstmt.setString(1, newStateId);
-        pstmt.setLong(2, instanceId);
-        pstmt.executeUpdate();
-        pstmt.close();
+    private static List<TransitionResult> failAll(Collection<Long> instanceIds, String error) {
+        List<TransitionResult> results = new ArrayList<>(instanceIds.size());
+        for (Long instanceId : instanceIds) {
+            results.add(TransitionResult.failed(instanceId != null ? instanceId : -1, error));
+        }
+        return results;
+    }
+    
+    /**
+     * Checks that the transition belongs to the effective workflow of the instance's group.
+     *
+     * @return The error, or null if the instance may take the transition
+     */
+    private static String workflowMismatch(ProductInstanceInfo instanceInfo, CompiledTransition transition) {
+        if (instanceInfo.workflowId == null) {
+            return "Product instance has no workflow";
+        }
+        if (!instanceInfo.workflowId.equals(transition.workflowId())) {
+            return "Transition " + transition.type() + " belongs to another workflow than the product instance";
+        }
+        return null;
+    }
+    
+    private static ActionContext createActionContext(long instanceId, CompiledTransition transition, ProductInstanceInfo instanceInfo) {
+        return new ActionContext(instanceId, transition.action(), createContext(instanceInfo));
+    }
+    
+    private static Map<String, Object> createContext(ProductInstanceInfo instanceInfo) {
+        return MustacheTemplateEngine.createProductInstanceContext(
+            instanceInfo.productName,
+            instanceInfo.serialNumber,
+            instanceInfo.customerMail,
+            instanceInfo.customerName,
+            instanceInfo.productNumber,
+            instanceInfo.purchaseDate != null ? instanceInfo.purchaseDate.format(DateTimeFormatter.ISO_LOCAL_DATE) : null
+        );
+    }
+    
+    /**
+     * Loads the template details and effective workflow of all given instances with one query;
+     * missing IDs are absent from the map.
+     */
+    private static Map<Long, ProductInstanceInfo> getProductInstanceInfos(Connection conn, Collection<Long> instanceIds) throws Exception {
+        String sql = """
+            SELECT pi.id, pi.serial_number, pi.customer_mail, pi.customer_name, pi.purchase_date,
+                   p.name as product_name, p.product_number, w.workflow_id
+            FROM product_instances pi
+            JOIN products p ON pi.product_id = p.id
+            LEFT JOIN product_group_workflows w ON w.group_id = p.group_id
+            WHERE pi.id IN (SELECT value FROM json_each(?))
+        """;
+        
+        Map<Long, ProductInstanceInfo> instances = new HashMap<>(instanceIds.size() * 2);
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, toJsonArray(instanceIds));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    ProductInstanceInfo info = new ProductInstanceInfo();
+                    info.serialNumber = rs.getString("serial_number");
+                    info.customerMail = rs.getString("customer_mail");
+                    info.customerName = rs.getString("customer_name");
+                    info.productName = rs.getString("product_name");
+                    info.productNumber = rs.getString("product_number");
+                    info.purchaseDate = parsePurchaseDate(rs.getString("purchase_date"));
+                    info.workflowId = rs.getString("workflow_id");
+                    instances.put(rs.getLong("id"), info);
+                }
+            }
+        }
+        return instances;
+    }
+    
+    /**
+     * Formats IDs as a JSON array so a whole set can be bound to one {@code json_each} parameter.
+     */
+    private static String toJsonArray(Collection<Long> ids) {
+        StringBuilder json = new StringBuilder(ids.size() * 8 + 2).append('[');
+        for (Long id : ids) {
+            if (id != null) {
+                if (json.length() > 1) {
+                    json.append(',');
+                }
+                json.append(id.longValue());
+            }
+        }
+        return json.append(']').toString();
+    }
+    
+    private static LocalDateTime parsePurchaseDate(String purchaseDate) {
+        if (purchaseDate == null) {
+            return null;
+        }
+        // SQLite's CURRENT_TIMESTAMP uses a space instead of the ISO 'T' separator
+        return LocalDateTime.parse(purchaseDate.replace(' ', 'T'), DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+    }
+    
+    private static void updateProductInstanceStates(Connection conn, Collection<Long> instanceIds, String newStateId) throws Exception {
+        String sql = "UPDATE product_instances SET current_state_id = ? WHERE id IN (SELECT value FROM json_each(?))";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, newStateId);
+            pstmt.setString(2, toJsonArray(instanceIds));
+            pstmt.executeUpdate();
+        }
     }
     
     // Helper class for product instance information
@@ -336,5 +523,6 @@ public class WorkflowExecutor {
         String productName;
         String productNumber;
         LocalDateTime purchaseDate;
+        String workflowId;
     }
 }
\ No newline at end of file
@@ -0,0 +1,211 @@
+package com.happyheal.workflow;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.happyheal.database.DatabaseManager;
+import com.happyheal.workflow.action.TransitionAction;
+import com.happyheal.workflow.action.TransitionActions;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, compiled view of all workflows.
+ *
+ * <p>States and transitions are numbered densely in load order; transitions are indexed
+ * by database id and by from-state, and every setup is parsed into an {@link ActionSpec}
+ * by its {@link TransitionAction} up front. Workflow definitions rarely change, so the
+ * shared graph is loaded once and only rebuilt after an import, sync or clear bumps
+ * {@link DatabaseManager#getWorkflowVersion()}.</p>
+ */
+public final class WorkflowGraph {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final int[] NO_TRANSITIONS = new int[0];
+
+    private static volatile WorkflowGraph current;
+
+    /**
+     * A transition with its states resolved and its setup pre-parsed.
+     *
+     * @param index Dense index of the transition in this graph
+     * @param fromState Dense index of the from-state
+     * @param toState Dense index of the to-state
+     * @param setupJson The setup as stored, or null
+     * @param handler The action registered for the type, or null if the type is unknown
+     * @param action The parsed setup, or null if it is invalid
+     * @param error Why the transition cannot be executed, or null
+     */
+    public record CompiledTransition(int index, long id, String workflowId, String type, String setupJson,
+                                     int fromState, String fromStateId, int toState, String toStateId,
+                                     TransitionAction handler, ActionSpec action, String error) {
+
+        public boolean isValid() {
+            return action != null;
+        }
+    }
+
+    private final long version;
+    private final String[] stateIds;
+    private final Map<String, Integer> stateIndex;
+    private final CompiledTransition[] transitions;
+    private final Map<Long, CompiledTransition> transitionsById;
+    private final int[][] outgoing;
+
+    private WorkflowGraph(long version, List<String> stateIds, List<CompiledTransition> transitions) {
+        this.version = version;
+        this.stateIds = stateIds.toArray(new String[0]);
+        this.stateIndex = new HashMap<>(stateIds.size() * 2);
+        for (int i = 0; i < this.stateIds.length; i++) {
+            stateIndex.put(this.stateIds[i], i);
+        }
+        this.transitions = transitions.toArray(new CompiledTransition[0]);
+        this.transitionsById = new HashMap<>(transitions.size() * 2);
+
+        int[] outgoingCounts = new int[this.stateIds.length];
+        for (CompiledTransition transition : this.transitions) {
+            transitionsById.put(transition.id(), transition);
+            outgoingCounts[transition.fromState()]++;
+        }
+        this.outgoing = new int[this.stateIds.length][];
+        for (int i = 0; i < outgoing.length; i++) {
+            outgoing[i] = outgoingCounts[i] == 0 ? NO_TRANSITIONS : new int[outgoingCounts[i]];
+            outgoingCounts[i] = 0;
+        }
+        for (CompiledTransition transition : this.transitions) {
+            int from = transition.fromState();
+            outgoing[from][outgoingCounts[from]++] = transition.index();
+        }
+    }
+
+    /**
+     * Returns the shared graph, rebuilding it if the workflows changed since it was loaded.
+     */
+    public static WorkflowGraph current() throws SQLException {
+        WorkflowGraph graph = current;
+        long version = DatabaseManager.getWorkflowVersion();
+        if (graph == null || graph.version != version) {
+            synchronized (WorkflowGraph.class) {
+                graph = current;
+                if (graph == null || graph.version != version) {
+                    try (Connection conn = DatabaseManager.getReadConnection()) {
+                        graph = load(conn, version);
+                    }
+                    current = graph;
+                }
+            }
+        }
+        return graph;
+    }
+
+    private static WorkflowGraph load(Connection conn, long version) throws SQLException {
+        List<String> stateIds = new ArrayList<>();
+        Map<String, Integer> stateIndex = new HashMap<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id FROM workflow_states ORDER BY workflow_id, rowid")) {
+            while (rs.next()) {
+                stateIndex.put(rs.getString(1), stateIds.size());
+                stateIds.add(rs.getString(1));
+            }
+        }
+
+        List<CompiledTransition> transitions = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(
+                 "SELECT id, workflow_id, type, from_state, to_state, setup_json FROM workflow_transitions ORDER BY id")) {
+            while (rs.next()) {
+                long id = rs.getLong("id");
+                String type = rs.getString("type");
+                String fromStateId = rs.getString("from_state");
+                String toStateId = rs.getString("to_state");
+                Integer from = stateIndex.get(fromStateId);
+                Integer to = stateIndex.get(toStateId);
+                if (from == null || to == null) {
+                    System.err.println("Skipping workflow transition " + id + " with unknown state");
+                    continue;
+                }
+
+                TransitionAction handler = TransitionActions.get(type);
+                String setupJson = rs.getString("setup_json");
+                ActionSpec action = null;
+                String error = null;
+                try {
+                    action = parseSetup(handler, type, setupJson);
+                } catch (Exception e) {
+                    error = e.getMessage();
+                    System.err.println("Invalid setup for workflow transition " + id + " (" + type + "): " + error);
+                }
+
+                transitions.add(new CompiledTransition(transitions.size(), id, rs.getString("workflow_id"), type, setupJson,
+                    from, fromStateId, to, toStateId, handler, action, error));
+            }
+        }
+
+        return new WorkflowGraph(version, stateIds, transitions);
+    }
+
+    /**
+     * Parses a stored setup with the action registered for its type.
+     *
+     * @param handler The action for the type, or null if the type is unknown
+     * @throws IllegalArgumentException If the type is unknown
+     */
+    static ActionSpec parseSetup(TransitionAction handler, String type, String setupJson) throws Exception {
+        if (handler == null) {
+            throw new IllegalArgumentException("Unknown transition type: " + type);
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, Object> setup = setupJson != null ? objectMapper.readValue(setupJson, Map.class) : null;
+        return handler.parse(setup);
+    }
+
+    /**
+     * Returns the transition with the given database id, or null.
+     */
+    public CompiledTransition getTransition(long transitionId) {
+        return transitionsById.get(transitionId);
+    }
+
+    /**
+     * Returns the transitions leaving the given state, in definition order.
+     */
+    public List<CompiledTransition> getTransitionsFrom(String stateId) {
+        Integer state = stateIndex.get(stateId);
+        if (state == null) {
+            return Collections.emptyList();
+        }
+        int[] indices = outgoing[state];
+        List<CompiledTransition> result = new ArrayList<>(indices.length);
+        for (int index : indices) {
+            result.add(transitions[index]);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the dense index of a state, or -1 if it is unknown.
+     */
+    public int getStateIndex(String stateId) {
+        Integer state = stateIndex.get(stateId);
+        return state != null ? state : -1;
+    }
+
+    public String getStateId(int stateIndex) {
+        return stateIds[stateIndex];
+    }
+
+    public int getStateCount() {
+        return stateIds.length;
+    }
+
+    public List<CompiledTransition> getTransitions() {
+        return Collections.unmodifiableList(Arrays.asList(transitions));
+    }
+}
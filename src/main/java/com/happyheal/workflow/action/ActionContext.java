@@ -0,0 +1,35 @@
+package com.happyheal.workflow.action;
+
+import com.happyheal.workflow.ActionSpec;
+import com.happyheal.workflow.MustacheTemplateEngine;
+
+import java.util.Map;
+
+/**
+ * One execution of a transition action for one product instance.
+ *
+ * @param instanceId The product instance the transition runs for
+ * @param spec The parsed setup of the transition
+ * @param variables Mustache variables of the instance
+ * @param idempotencyKey Identifies this effect across redeliveries from the outbox, or null
+ */
+public record ActionContext(long instanceId, ActionSpec spec, Map<String, Object> variables, String idempotencyKey) {
+
+    public ActionContext(long instanceId, ActionSpec spec, Map<String, Object> variables) {
+        this(instanceId, spec, variables, null);
+    }
+
+    /**
+     * Renders a template of the spec with the instance's variables; null stays null.
+     */
+    public String render(String template) {
+        return template != null ? MustacheTemplateEngine.processTemplate(template, variables) : null;
+    }
+
+    /**
+     * Returns the spec cast to the action's own spec type.
+     */
+    public <T extends ActionSpec> T spec(Class<T> type) {
+        return type.cast(spec);
+    }
+}
@@ -0,0 +1,111 @@
+package com.happyheal.workflow.action;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs transition actions within their declared batch sizes and concurrency limits.
+ */
+public final class ActionDispatcher {
+
+    private ActionDispatcher() {}
+
+    /**
+     * Executes an action for one instance, waiting for a free slot of its concurrency limit.
+     * Exceptions are logged and reported as failure.
+     */
+    public static boolean executeGuarded(TransitionAction action, ActionContext context) {
+        Semaphore permits = TransitionActions.permits(action);
+        permits.acquireUninterruptibly();
+        try {
+            return action.execute(context);
+        } catch (Exception e) {
+            System.err.println("Error executing " + action.type() + " action: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Executes an action for many instances of the same transition.
+     *
+     * <p>Contexts are grouped into {@link TransitionAction#executeBatch} calls of at most
+     * {@link TransitionAction#maxBatchSize()} instances when the action supports batching
+     * for the transition's spec,
+     * and into single {@link TransitionAction#execute} calls otherwise. Up to the action's
+     * concurrency limit of these groups run in parallel; the calling thread works on them
+     * too, so a limit of one runs everything on the caller.</p>
+     *
+     * @return One outcome per context, in the same order
+     */
+    public static boolean[] executeAll(TransitionAction action, List<ActionContext> contexts, Executor executor) {
+        boolean[] outcomes = new boolean[contexts.size()];
+        if (contexts.isEmpty()) {
+            return outcomes;
+        }
+
+        boolean batched = action.supportsBatch(contexts.get(0).spec());
+        int groupSize = batched ? Math.max(1, action.maxBatchSize()) : 1;
+        int groupCount = contexts.size() / groupSize + (contexts.size() % groupSize == 0 ? 0 : 1);
+        int workers = Math.min(groupCount, TransitionActions.concurrencyLimit(action));
+
+        AtomicInteger nextGroup = new AtomicInteger();
+        CountDownLatch remainingGroups = new CountDownLatch(groupCount);
+        Runnable worker = () -> {
+            int group;
+            while ((group = nextGroup.getAndIncrement()) < groupCount) {
+                try {
+                    int from = group * groupSize;
+                    executeGroup(action, batched, contexts, from, Math.min(from + groupSize, contexts.size()), outcomes);
+                } finally {
+                    remainingGroups.countDown();
+                }
+            }
+        };
+
+        for (int i = 1; i < workers; i++) {
+            CompletableFuture.runAsync(worker, executor);
+        }
+        worker.run();
+
+        // Wait for groups, not helpers: a helper that starts late simply finds no work left
+        try {
+            remainingGroups.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return outcomes;
+    }
+
+    private static void executeGroup(TransitionAction action, boolean batched, List<ActionContext> contexts,
+                                     int from, int to, boolean[] outcomes) {
+        Semaphore permits = TransitionActions.permits(action);
+        permits.acquireUninterruptibly();
+        try {
+            if (batched) {
+                List<Boolean> batchOutcomes = action.executeBatch(contexts.subList(from, to));
+                if (batchOutcomes.size() != to - from) {
+                    System.err.println(action.type() + " action returned " + batchOutcomes.size()
+                        + " outcomes for " + (to - from) + " instances");
+                    return;
+                }
+                for (int i = from; i < to; i++) {
+                    outcomes[i] = Boolean.TRUE.equals(batchOutcomes.get(i - from));
+                }
+            } else {
+                outcomes[from] = action.execute(contexts.get(from));
+            }
+        } catch (Exception e) {
+            System.err.println("Error executing " + action.type() + " action: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            permits.release();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.happyheal.workflow.action;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stops calling an endpoint after repeated failures.
+ *
+ * <p>After {@code failureThreshold} failures in a row the breaker opens and calls fail
+ * without being attempted. Once {@code openMillis} have passed, a single trial call is let
+ * through: its success closes the breaker, its failure opens it again.</p>
+ */
+public final class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openNanos;
+
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    CircuitBreaker(String name, int failureThreshold, long openMillis) {
+        this.name = name;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+    }
+
+    /**
+     * Whether a call may be made now. A true result in the half-open state is the trial
+     * call and must be followed by {@link #onSuccess()} or {@link #onFailure()}.
+     */
+    synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.nanoTime() - openedAt < openNanos) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                trialInFlight = true;
+                return true;
+            default:
+                if (trialInFlight) {
+                    return false;
+                }
+                trialInFlight = true;
+                return true;
+        }
+    }
+
+    synchronized void onSuccess() {
+        if (state != State.CLOSED) {
+            System.out.println("Circuit breaker for " + name + " closed");
+        }
+        state = State.CLOSED;
+        failures = 0;
+        trialInFlight = false;
+    }
+
+    synchronized void onFailure() {
+        trialInFlight = false;
+        failures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && failures >= failureThreshold)) {
+            System.err.println("Circuit breaker for " + name + " opened after " + failures + " failures");
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Failures in a row since the last success.
+     */
+    public synchronized int getFailures() {
+        return failures;
+    }
+}
@@ -0,0 +1,93 @@
+package com.happyheal.workflow.action;
+
+import com.happyheal.workflow.ActionSpec;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Drops one file per instance into a partner's inbox directory, e.g. an SFTP-synchronized
+ * or mounted share. Files are written under a temporary name and renamed, so the partner
+ * never picks up a half-written file. Batches prepare each target directory only once.
+ */
+public class DropAction implements TransitionAction {
+
+    /**
+     * @param directory Template of the inbox directory
+     * @param fileName Template of the file name within the directory
+     * @param content Template of the file content
+     */
+    public record Spec(String directory, String fileName, String content) implements ActionSpec {
+        @Override
+        public String type() {
+            return "drop";
+        }
+    }
+
+    @Override
+    public String type() {
+        return "drop";
+    }
+
+    @Override
+    public ActionSpec parse(Map<String, Object> setup) {
+        return new Spec(ActionSpec.required(setup, "Directory"), ActionSpec.required(setup, "FileName"),
+            ActionSpec.required(setup, "Content"));
+    }
+
+    @Override
+    public boolean supportsOutbox() {
+        return true;
+    }
+
+    @Override
+    public boolean supportsBatch() {
+        return true;
+    }
+
+    @Override
+    public int maxBatchSize() {
+        return 1000;
+    }
+
+    @Override
+    public boolean execute(ActionContext context) throws IOException {
+        return executeBatch(List.of(context)).get(0);
+    }
+
+    @Override
+    public List<Boolean> executeBatch(List<ActionContext> contexts) throws IOException {
+        Spec spec = contexts.get(0).spec(Spec.class);
+        Set<Path> preparedDirectories = new HashSet<>();
+        List<Boolean> outcomes = new ArrayList<>(contexts.size());
+
+        for (ActionContext context : contexts) {
+            Path directory = Paths.get(context.render(spec.directory()));
+            Path target = directory.resolve(context.render(spec.fileName()));
+            try {
+                if (preparedDirectories.add(directory)) {
+                    Files.createDirectories(directory);
+                }
+                Path tempFile = directory.resolve("." + target.getFileName() + ".part");
+                Files.writeString(tempFile, context.render(spec.content()));
+                Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                outcomes.add(true);
+            } catch (IOException e) {
+                System.err.println("Error dropping file " + target + ": " + e.getMessage());
+                outcomes.add(false);
+            }
+        }
+
+        System.out.println("Drop action completed: " + outcomes.stream().filter(Boolean::booleanValue).count()
+            + " of " + contexts.size() + " files");
+        return outcomes;
+    }
+}
@@ -0,0 +1,79 @@
+package com.happyheal.workflow.action;
+
+import com.happyheal.workflow.ActionSpec;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stand-in for booking documents in the ERP system until the real connector exists.
+ * Renders the Document template per instance and logs it. Every call simulates one ERP
+ * round trip of {@code happyheal.action.erp.latencyMs}, so batching many instances into
+ * one call behaves like the real bulk booking interface.
+ */
+public class ErpStubAction implements TransitionAction {
+
+    private static final long LATENCY_MS = Long.getLong("happyheal.action.erp.latencyMs", 0L);
+
+    /**
+     * @param system Name of the target ERP system, for the log
+     * @param document Template of the document booked for each instance
+     */
+    public record Spec(String system, String document) implements ActionSpec {
+        @Override
+        public String type() {
+            return "erp";
+        }
+    }
+
+    @Override
+    public String type() {
+        return "erp";
+    }
+
+    @Override
+    public ActionSpec parse(Map<String, Object> setup) {
+        String system = ActionSpec.template(setup, "System");
+        return new Spec(system != null ? system : "ERP", ActionSpec.required(setup, "Document"));
+    }
+
+    @Override
+    public boolean supportsOutbox() {
+        return true;
+    }
+
+    @Override
+    public boolean supportsBatch() {
+        return true;
+    }
+
+    @Override
+    public int maxBatchSize() {
+        return 200;
+    }
+
+    @Override
+    public int maxConcurrency() {
+        return 2;
+    }
+
+    @Override
+    public boolean execute(ActionContext context) throws InterruptedException {
+        return executeBatch(List.of(context)).get(0);
+    }
+
+    @Override
+    public List<Boolean> executeBatch(List<ActionContext> contexts) throws InterruptedException {
+        Spec spec = contexts.get(0).spec(Spec.class);
+        StringBuilder documents = new StringBuilder();
+        for (ActionContext context : contexts) {
+            documents.append(System.lineSeparator()).append("  ").append(context.render(spec.document()));
+        }
+        if (LATENCY_MS > 0) {
+            Thread.sleep(LATENCY_MS);
+        }
+        System.out.println("ERP STUB (" + spec.system() + "): booked " + contexts.size() + " documents" + documents);
+        return Collections.nCopies(contexts.size(), true);
+    }
+}
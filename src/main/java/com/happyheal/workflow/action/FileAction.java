@@ -0,0 +1,125 @@
+package com.happyheal.workflow.action;
+
+import com.happyheal.workflow.ActionSpec;
+
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Writes or appends templated content to a file.
+ * Appended lines go through the {@link FileSink}, which keeps files open and writes in group commits.
+ */
+public class FileAction implements TransitionAction {
+
+    @Override
+    public String type() {
+        return "file";
+    }
+
+    @Override
+    public ActionSpec parse(Map<String, Object> setup) {
+        return new ActionSpec.File(ActionSpec.required(setup, "Path"), ActionSpec.required(setup, "Content"),
+            ActionSpec.flag(setup, "Append"));
+    }
+
+    @Override
+    public boolean supportsOutbox() {
+        return true;
+    }
+
+    @Override
+    public boolean supportsBatch() {
+        return true;
+    }
+
+    @Override
+    public int maxBatchSize() {
+        return 1000;
+    }
+
+    @Override
+    public boolean execute(ActionContext context) throws Exception {
+        ActionSpec.File spec = context.spec(ActionSpec.File.class);
+
+        // Process templates
+        Path path = Paths.get(context.render(spec.path()));
+        String content = context.render(spec.content());
+
+        if (spec.append()) {
+            FileSink.append(path, content).join();
+        } else {
+            createParentDirectories(path);
+            Files.writeString(path, content);
+        }
+
+        System.out.println("File action completed: " + path);
+        return true;
+    }
+
+    /**
+     * Appends are handed to the {@link FileSink} without waiting for its next commit on a thread.
+     */
+    @Override
+    public CompletableFuture<Boolean> executeAsync(ActionContext context, Executor executor) {
+        ActionSpec.File spec = context.spec(ActionSpec.File.class);
+        if (!spec.append()) {
+            return TransitionAction.super.executeAsync(context, executor);
+        }
+        Path path;
+        try {
+            path = Paths.get(context.render(spec.path()));
+        } catch (Exception e) {
+            System.err.println("Error executing file action: " + e.getMessage());
+            return CompletableFuture.completedFuture(false);
+        }
+        return FileSink.append(path, context.render(spec.content()))
+            .thenApply(ignored -> true)
+            .exceptionally(e -> false);
+    }
+
+    /**
+     * Appends all lines of the batch to the {@link FileSink}, which writes lines bound for
+     * the same file together, and waits for the commit.
+     */
+    @Override
+    public List<Boolean> executeBatch(List<ActionContext> contexts) throws Exception {
+        if (!contexts.get(0).spec(ActionSpec.File.class).append()) {
+            return TransitionAction.super.executeBatch(contexts);
+        }
+
+        List<CompletableFuture<Void>> lines = new ArrayList<>(contexts.size());
+        for (ActionContext context : contexts) {
+            ActionSpec.File spec = context.spec(ActionSpec.File.class);
+            try {
+                lines.add(FileSink.append(Paths.get(context.render(spec.path())), context.render(spec.content())));
+            } catch (InvalidPathException e) {
+                System.err.println("Error executing file action: " + e.getMessage());
+                lines.add(CompletableFuture.failedFuture(e));
+            }
+        }
+
+        List<Boolean> outcomes = new ArrayList<>(contexts.size());
+        int written = 0;
+        for (CompletableFuture<Void> line : lines) {
+            boolean success = !line.handle((ignored, e) -> e != null).join();
+            outcomes.add(success);
+            written += success ? 1 : 0;
+        }
+        System.out.println("File action completed: " + written + " of " + contexts.size() + " lines appended");
+        return outcomes;
+    }
+
+    private static void createParentDirectories(Path path) throws Exception {
+        // Create directories if they don't exist
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package com.happyheal.workflow.action;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Appends lines to files with group commits over pooled channels.
+ *
+ * <p>Lines are buffered per file and written by one background thread. By default a commit
+ * starts as soon as the thread is free, so a single line is written at once and lines that
+ * arrive during a write form the next group. With {@code happyheal.file.flushIntervalMs}
+ * set, lines linger for that long unless {@code happyheal.file.flushRecords} are waiting. Channels stay open between commits, at most
+ * {@code happyheal.file.maxOpenFiles} of them; the least recently used one is closed first.
+ * Written data is forced to disk every {@code happyheal.file.fsyncEveryRecords} lines or
+ * {@code happyheal.file.fsyncEveryMs} per file (both off by default), and always on close.</p>
+ */
+public final class FileSink {
+
+    private static final long FLUSH_INTERVAL_MS = Math.max(0, Long.getLong("happyheal.file.flushIntervalMs", 0L));
+    private static final int FLUSH_RECORDS = Math.max(1, Integer.getInteger("happyheal.file.flushRecords", 1000));
+    private static final int MAX_OPEN_FILES = Math.max(1, Integer.getInteger("happyheal.file.maxOpenFiles", 64));
+    private static final int FSYNC_EVERY_RECORDS = Integer.getInteger("happyheal.file.fsyncEveryRecords", 0);
+    private static final long FSYNC_EVERY_MS = Long.getLong("happyheal.file.fsyncEveryMs", 0L);
+
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    // Lines waiting for the next commit, guarded by lock
+    private static Map<Path, Buffer> pending = new LinkedHashMap<>();
+    private static int pendingRecords;
+
+    // Least recently written first; guarded by its own monitor, held for a whole commit
+    private static final LinkedHashMap<Path, OpenFile> openFiles = new LinkedHashMap<>(16, 0.75f, true);
+
+    private static final Object lock = new Object();
+    private static final AtomicBoolean flushQueued = new AtomicBoolean();
+    private static ScheduledExecutorService flusher;
+    private static boolean shutdownHookAdded;
+
+    private static final class Buffer {
+        final StringBuilder text = new StringBuilder();
+        final List<CompletableFuture<Void>> waiters = new ArrayList<>();
+    }
+
+    private static final class OpenFile {
+        final FileChannel channel;
+        int unsyncedRecords;
+        long lastSync = System.nanoTime();
+
+        OpenFile(FileChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    private FileSink() {}
+
+    /**
+     * Queues a line for the file; a line separator is added.
+     *
+     * @return Completes once the line is written, or exceptionally if writing failed
+     */
+    public static CompletableFuture<Void> append(Path path, String line) {
+        CompletableFuture<Void> written = new CompletableFuture<>();
+        synchronized (lock) {
+            ensureStarted();
+            Buffer buffer = pending.computeIfAbsent(path.toAbsolutePath().normalize(), key -> new Buffer());
+            buffer.text.append(line).append(LINE_SEPARATOR);
+            buffer.waiters.add(written);
+            pendingRecords++;
+            boolean flushNow = FLUSH_INTERVAL_MS == 0 ? pendingRecords == 1 : pendingRecords >= FLUSH_RECORDS;
+            if (flushNow && flushQueued.compareAndSet(false, true)) {
+                flusher.execute(FileSink::flushQueued);
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Writes all buffered lines, forces them to disk and closes every channel. The sink
+     * starts again on the next append.
+     */
+    public static void shutdown() {
+        ScheduledExecutorService executor;
+        synchronized (lock) {
+            executor = flusher;
+            flusher = null;
+        }
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.getLong("happyheal.transition.shutdownTimeoutMs", 10_000), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // The flusher has stopped; drain what came in meanwhile on this thread
+        synchronized (openFiles) {
+            flush();
+            for (Iterator<Map.Entry<Path, OpenFile>> it = openFiles.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<Path, OpenFile> entry = it.next();
+                close(entry.getKey(), entry.getValue());
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Number of channels currently open.
+     */
+    public static int getOpenFileCount() {
+        synchronized (openFiles) {
+            return openFiles.size();
+        }
+    }
+
+    private static void ensureStarted() {
+        if (flusher != null) {
+            return;
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "file-sink");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (FLUSH_INTERVAL_MS > 0) {
+            flusher.scheduleWithFixedDelay(FileSink::flushSafely, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+        if (FSYNC_EVERY_MS > 0) {
+            flusher.scheduleWithFixedDelay(FileSink::syncIdleFiles, FSYNC_EVERY_MS, FSYNC_EVERY_MS, TimeUnit.MILLISECONDS);
+        }
+        if (!shutdownHookAdded) {
+            // Daemon threads die with the JVM; make sure buffered lines reach the files
+            Runtime.getRuntime().addShutdownHook(new Thread(FileSink::shutdown, "file-sink-shutdown"));
+            shutdownHookAdded = true;
+        }
+    }
+
+    private static void flushQueued() {
+        flushQueued.set(false);
+        flushSafely();
+    }
+
+    private static void flushSafely() {
+        try {
+            synchronized (openFiles) {
+                flush();
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Error flushing file sink: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Writes one group commit. Callers hold the {@code openFiles} monitor.
+     */
+    private static void flush() {
+        Map<Path, Buffer> commit;
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            commit = pending;
+            pending = new LinkedHashMap<>();
+            pendingRecords = 0;
+        }
+
+        for (Map.Entry<Path, Buffer> entry : commit.entrySet()) {
+            Path path = entry.getKey();
+            Buffer buffer = entry.getValue();
+            try {
+                OpenFile file = open(path);
+                ByteBuffer bytes = StandardCharsets.UTF_8.encode(buffer.text.toString());
+                while (bytes.hasRemaining()) {
+                    file.channel.write(bytes);
+                }
+                file.unsyncedRecords += buffer.waiters.size();
+                if (isSyncDue(file)) {
+                    sync(file);
+                }
+                buffer.waiters.forEach(waiter -> waiter.complete(null));
+            } catch (IOException e) {
+                System.err.println("Error appending to " + path + ": " + e.getMessage());
+                OpenFile broken = openFiles.remove(path);
+                if (broken != null) {
+                    close(path, broken);
+                }
+                buffer.waiters.forEach(waiter -> waiter.completeExceptionally(e));
+            }
+        }
+    }
+
+    /**
+     * Files that were not written since their last commit still get their interval sync.
+     */
+    private static void syncIdleFiles() {
+        synchronized (openFiles) {
+            for (Map.Entry<Path, OpenFile> entry : openFiles.entrySet()) {
+                OpenFile file = entry.getValue();
+                if (file.unsyncedRecords > 0 && isSyncDue(file)) {
+                    try {
+                        sync(file);
+                    } catch (IOException e) {
+                        System.err.println("Error syncing " + entry.getKey() + ": " + e.getMessage());
+                    }
+                }
+            }
+        }
+    }
+
+    private static OpenFile open(Path path) throws IOException {
+        OpenFile file = openFiles.get(path);
+        if (file != null) {
+            return file;
+        }
+        if (openFiles.size() >= MAX_OPEN_FILES) {
+            Iterator<Map.Entry<Path, OpenFile>> eldest = openFiles.entrySet().iterator();
+            Map.Entry<Path, OpenFile> entry = eldest.next();
+            eldest.remove();
+            close(entry.getKey(), entry.getValue());
+        }
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        file = new OpenFile(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.APPEND));
+        openFiles.put(path, file);
+        return file;
+    }
+
+    private static boolean isSyncDue(OpenFile file) {
+        return (FSYNC_EVERY_RECORDS > 0 && file.unsyncedRecords >= FSYNC_EVERY_RECORDS)
+            || (FSYNC_EVERY_MS > 0 && System.nanoTime() - file.lastSync >= TimeUnit.MILLISECONDS.toNanos(FSYNC_EVERY_MS));
+    }
+
+    private static void sync(OpenFile file) throws IOException {
+        file.channel.force(false);
+        file.unsyncedRecords = 0;
+        file.lastSync = System.nanoTime();
+    }
+
+    private static void close(Path path, OpenFile file) {
+        try {
+            if (file.unsyncedRecords > 0) {
+                file.channel.force(false);
+            }
+            file.channel.close();
+        } catch (IOException e) {
+            System.err.println("Error closing " + path + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.happyheal.workflow.action;
+
+import com.happyheal.workflow.ActionSpec;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Calls a REST endpoint; with a Body the request is a JSON POST, otherwise a GET.
+ *
+ * <p>Transitions with {@code "Coalesce": true} in their setup (or all POST transitions
+ * when {@code happyheal.http.coalesce} is set) send the bodies of many instances as one
+ * JSON-array request per endpoint, see {@link HttpCoalescer}. All requests go through
+ * {@link HttpTransport}, which applies timeouts and per-host limits. Connection errors,
+ * timeouts, 429 and 5xx responses are retried per {@link Resilience}; other responses are final.</p>
+ */
+public class HttpAction implements TransitionAction {
+
+    private static final Resilience resilience = Resilience.forType("http");
+    private static final HttpCoalescer coalescer = new HttpCoalescer(resilience);
+
+    @Override
+    public String type() {
+        return "http";
+    }
+
+    @Override
+    public ActionSpec parse(Map<String, Object> setup) {
+        String body = ActionSpec.template(setup, "Body");
+        boolean coalesce = setup != null && setup.containsKey("Coalesce")
+            ? ActionSpec.flag(setup, "Coalesce")
+            : Boolean.getBoolean("happyheal.http.coalesce");
+        // Only request bodies can be combined into an array
+        return new ActionSpec.Http(ActionSpec.normalizeEndpoint(ActionSpec.required(setup, "Endpoint")),
+            body, coalesce && body != null);
+    }
+
+    @Override
+    public boolean supportsOutbox() {
+        return true;
+    }
+
+    /**
+     * Bulk transitions send all requests of a batch without a thread per request; the
+     * per-host limit of {@link HttpTransport} decides how many are in flight.
+     */
+    @Override
+    public boolean supportsBatch() {
+        return true;
+    }
+
+    /**
+     * Instances per batch; the coalescer splits each endpoint's share into array requests.
+     */
+    @Override
+    public int maxBatchSize() {
+        return HttpCoalescer.MAX_BATCH * 10;
+    }
+
+    @Override
+    public int maxConcurrency() {
+        return 16;
+    }
+
+    @Override
+    public boolean execute(ActionContext context) throws Exception {
+        ActionSpec.Http spec = context.spec(ActionSpec.Http.class);
+        if (spec.coalesce()) {
+            // Waits for the coalescing window, sharing the request with concurrent callers
+            return coalescer.submit(renderEndpoint(context), context.render(spec.body()), context.idempotencyKey()).join();
+        }
+        return sendAsync(context).join();
+    }
+
+    /**
+     * Sends the request with the non-blocking client, so no thread waits for the response or a retry.
+     */
+    @Override
+    public CompletableFuture<Boolean> executeAsync(ActionContext context, Executor executor) {
+        return sendAsync(context);
+    }
+
+    private static CompletableFuture<Boolean> sendAsync(ActionContext context) {
+        HttpRequest request;
+        try {
+            ActionSpec.Http spec = context.spec(ActionSpec.Http.class);
+            if (spec.coalesce()) {
+                return coalescer.submit(renderEndpoint(context), context.render(spec.body()), context.idempotencyKey());
+            }
+            request = buildRequest(context);
+        } catch (Exception e) {
+            System.err.println("Error executing HTTP action: " + e.getMessage());
+            return CompletableFuture.completedFuture(false);
+        }
+        return resilience.execute(HttpTransport.hostOf(request.uri()),
+            () -> HttpTransport.sendAsync(request).thenApply(HttpAction::handleResponse), false);
+    }
+
+    /**
+     * Sends the requests of all contexts at once and waits for the answers. Coalescing
+     * transitions send their bodies as JSON arrays, one group of requests per rendered endpoint.
+     */
+    @Override
+    public List<Boolean> executeBatch(List<ActionContext> contexts) {
+        if (!contexts.get(0).spec(ActionSpec.Http.class).coalesce()) {
+            List<CompletableFuture<Boolean>> requests = new ArrayList<>(contexts.size());
+            for (ActionContext context : contexts) {
+                requests.add(sendAsync(context));
+            }
+            List<Boolean> outcomes = new ArrayList<>(requests.size());
+            for (CompletableFuture<Boolean> request : requests) {
+                outcomes.add(request.join());
+            }
+            return outcomes;
+        }
+
+        Map<URI, List<Integer>> indicesByEndpoint = new LinkedHashMap<>();
+        List<String> bodies = new ArrayList<>(contexts.size());
+        List<Boolean> outcomes = new ArrayList<>(Collections.nCopies(contexts.size(), false));
+        for (int i = 0; i < contexts.size(); i++) {
+            ActionContext context = contexts.get(i);
+            bodies.add(context.render(context.spec(ActionSpec.Http.class).body()));
+            try {
+                indicesByEndpoint.computeIfAbsent(renderEndpoint(context), endpoint -> new ArrayList<>()).add(i);
+            } catch (IllegalArgumentException e) {
+                System.err.println("Error executing HTTP action: " + e.getMessage());
+            }
+        }
+
+        // Send every endpoint's requests first, then collect the answers
+        List<List<Integer>> endpointIndices = new ArrayList<>(indicesByEndpoint.values());
+        List<CompletableFuture<List<Boolean>>> requests = new ArrayList<>(endpointIndices.size());
+        for (Map.Entry<URI, List<Integer>> entry : indicesByEndpoint.entrySet()) {
+            List<String> endpointBodies = new ArrayList<>(entry.getValue().size());
+            List<String> endpointKeys = new ArrayList<>(entry.getValue().size());
+            for (int index : entry.getValue()) {
+                endpointBodies.add(bodies.get(index));
+                endpointKeys.add(contexts.get(index).idempotencyKey());
+            }
+            requests.add(coalescer.sendAll(entry.getKey(), endpointBodies, endpointKeys));
+        }
+        for (int endpoint = 0; endpoint < requests.size(); endpoint++) {
+            List<Boolean> endpointOutcomes = requests.get(endpoint).join();
+            List<Integer> indices = endpointIndices.get(endpoint);
+            for (int i = 0; i < endpointOutcomes.size(); i++) {
+                outcomes.set(indices.get(i), endpointOutcomes.get(i));
+            }
+        }
+        return outcomes;
+    }
+
+    private static URI renderEndpoint(ActionContext context) {
+        return URI.create(context.render(context.spec(ActionSpec.Http.class).endpoint()));
+    }
+
+    private static HttpRequest buildRequest(ActionContext context) {
+        ActionSpec.Http spec = context.spec(ActionSpec.Http.class);
+
+        // Process templates
+        String endpoint = context.render(spec.endpoint());
+        String body = context.render(spec.body());
+
+        HttpRequest.Builder requestBuilder = HttpTransport.newRequest(URI.create(endpoint))
+            .header("Content-Type", "application/json");
+        if (context.idempotencyKey() != null) {
+            // Lets the partner recognize a redelivery from the outbox
+            requestBuilder.header("Idempotency-Key", context.idempotencyKey());
+        }
+
+        if (body != null) {
+            requestBuilder.POST(HttpRequest.BodyPublishers.ofString(body));
+        } else {
+            requestBuilder.GET();
+        }
+
+        return requestBuilder.build();
+    }
+
+    private static boolean handleResponse(HttpResponse<String> response) {
+        if (response.statusCode() >= 200 && response.statusCode() < 300) {
+            System.out.println("HTTP request successful: " + response.statusCode());
+            return true;
+        } else if (isRetryable(response.statusCode())) {
+            throw new UncheckedIOException(new IOException("HTTP " + response.statusCode() + " - " + response.body()));
+        } else {
+            System.err.println("HTTP request failed: " + response.statusCode() + " - " + response.body());
+            return false;
+        }
+    }
+
+    /**
+     * Whether a status means the partner may accept the same request later.
+     */
+    static boolean isRetryable(int statusCode) {
+        return statusCode == 429 || statusCode >= 500;
+    }
+}
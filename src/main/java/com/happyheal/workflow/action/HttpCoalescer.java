@@ -0,0 +1,264 @@
+package com.happyheal.workflow.action;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.happyheal.metrics.MetricsRegistry;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Combines JSON bodies bound for the same endpoint into one JSON-array POST.
+ *
+ * <p>Bodies submitted one at a time are buffered per endpoint until
+ * {@code happyheal.http.coalesce.maxBatch} bodies are waiting or
+ * {@code happyheal.http.coalesce.windowMs} has passed since the first one. Bulk
+ * transitions hand over whole lists, which are sent in chunks without waiting.</p>
+ *
+ * <p>The response is mapped back to the items: if it is a JSON array with one element
+ * per item, each element decides its item (a boolean, or an object with a numeric
+ * {@code status} or a boolean {@code success}/{@code ok}). A 2xx response with an empty
+ * body or a JSON value other than an array counts for every item; a body that cannot be
+ * parsed or an array of the wrong length fails every item, since it cannot be told which
+ * items the partner accepted. Any other status fails every item. Array requests are
+ * retried as a whole. Responses may be {@link #MAX_BATCH} times
+ * {@code happyheal.http.maxBodyBytes} long, enough for one result per item.</p>
+ *
+ * <p>Items delivered from the outbox carry an idempotency key. Array requests list them in
+ * an {@code Idempotency-Keys} header, comma-separated in array order with an empty entry for
+ * items without one, so partners can drop redelivered items.</p>
+ */
+final class HttpCoalescer {
+
+    static final int MAX_BATCH = Math.max(1, Integer.getInteger("happyheal.http.coalesce.maxBatch", 100));
+    private static final long WINDOW_MS = Long.getLong("happyheal.http.coalesce.windowMs", 50L);
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Resilience resilience;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "http-coalescer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<URI, Buffer> buffers = new HashMap<>();
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong items = new AtomicLong();
+
+    private static final class Buffer {
+        final List<String> bodies = new ArrayList<>();
+        final List<String> idempotencyKeys = new ArrayList<>();
+        final List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+        ScheduledFuture<?> flushTask;
+    }
+
+    HttpCoalescer(Resilience resilience) {
+        this.resilience = resilience;
+        MetricsRegistry.counter("happyheal_http_coalesced_requests_total", "Array requests sent by the HTTP coalescer",
+            requests::get);
+        MetricsRegistry.counter("happyheal_http_coalesced_items_total", "Bodies sent in array requests", items::get);
+    }
+
+    /**
+     * Queues one body for the endpoint; the future completes when its array request is answered.
+     *
+     * @param idempotencyKey The item's idempotency key, or null
+     */
+    CompletableFuture<Boolean> submit(URI endpoint, String body, String idempotencyKey) {
+        if (!isJson(endpoint, body)) {
+            return CompletableFuture.completedFuture(false);
+        }
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        Buffer full = null;
+        synchronized (buffers) {
+            Buffer buffer = buffers.computeIfAbsent(endpoint, key -> new Buffer());
+            buffer.bodies.add(body);
+            buffer.idempotencyKeys.add(idempotencyKey);
+            buffer.futures.add(future);
+            if (buffer.bodies.size() == 1) {
+                buffer.flushTask = timer.schedule(() -> flush(endpoint, buffer), WINDOW_MS, TimeUnit.MILLISECONDS);
+            }
+            if (buffer.bodies.size() >= MAX_BATCH) {
+                buffers.remove(endpoint);
+                buffer.flushTask.cancel(false);
+                full = buffer;
+            }
+        }
+        if (full != null) {
+            send(endpoint, full);
+        }
+        return future;
+    }
+
+    private void flush(URI endpoint, Buffer buffer) {
+        synchronized (buffers) {
+            if (buffers.get(endpoint) != buffer) {
+                return; // Already sent because it filled up
+            }
+            buffers.remove(endpoint);
+        }
+        send(endpoint, buffer);
+    }
+
+    private void send(URI endpoint, Buffer buffer) {
+        sendArray(endpoint, buffer.bodies, buffer.idempotencyKeys).thenAccept(outcomes -> {
+            for (int i = 0; i < outcomes.size(); i++) {
+                buffer.futures.get(i).complete(outcomes.get(i));
+            }
+        });
+    }
+
+    /**
+     * Sends all bodies for one endpoint in array requests of at most {@link #MAX_BATCH} bodies.
+     *
+     * @param idempotencyKeys The idempotency key of each body, or null entries
+     * @return One outcome per body, in the same order
+     */
+    CompletableFuture<List<Boolean>> sendAll(URI endpoint, List<String> bodies, List<String> idempotencyKeys) {
+        List<String> validBodies = new ArrayList<>(bodies.size());
+        List<String> validKeys = new ArrayList<>(bodies.size());
+        boolean[] valid = new boolean[bodies.size()];
+        for (int i = 0; i < bodies.size(); i++) {
+            valid[i] = isJson(endpoint, bodies.get(i));
+            if (valid[i]) {
+                validBodies.add(bodies.get(i));
+                validKeys.add(idempotencyKeys.get(i));
+            }
+        }
+
+        List<CompletableFuture<List<Boolean>>> chunks = new ArrayList<>();
+        for (int from = 0; from < validBodies.size(); from += MAX_BATCH) {
+            int to = Math.min(from + MAX_BATCH, validBodies.size());
+            chunks.add(sendArray(endpoint, validBodies.subList(from, to), validKeys.subList(from, to)));
+        }
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        CompletableFuture<List<Boolean>>[] pending = chunks.toArray(new CompletableFuture[0]);
+        return CompletableFuture.allOf(pending).thenApply(ignored -> {
+            List<Boolean> sent = new ArrayList<>(validBodies.size());
+            for (CompletableFuture<List<Boolean>> chunk : chunks) {
+                sent.addAll(chunk.join());
+            }
+            List<Boolean> outcomes = new ArrayList<>(bodies.size());
+            int next = 0;
+            for (boolean isValid : valid) {
+                outcomes.add(isValid && sent.get(next++));
+            }
+            return outcomes;
+        });
+    }
+
+    /**
+     * A body that is not valid JSON would make the whole array unreadable for the partner,
+     * so it fails on its own instead of being sent.
+     */
+    private static boolean isJson(URI endpoint, String body) {
+        try {
+            objectMapper.readTree(body);
+            return true;
+        } catch (Exception e) {
+            System.err.println("Not coalescing invalid JSON body for " + endpoint + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private CompletableFuture<List<Boolean>> sendArray(URI endpoint, List<String> bodies, List<String> idempotencyKeys) {
+        int count = bodies.size();
+        requests.incrementAndGet();
+        items.addAndGet(count);
+
+        HttpRequest.Builder builder = HttpTransport.newRequest(endpoint)
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString("[" + String.join(",", bodies) + "]"));
+        if (idempotencyKeys.stream().anyMatch(Objects::nonNull)) {
+            // Lets the partner recognize redelivered items from the outbox
+            StringJoiner keys = new StringJoiner(",");
+            for (String key : idempotencyKeys) {
+                keys.add(key != null ? key : "");
+            }
+            builder.header("Idempotency-Keys", keys.toString());
+        }
+        HttpRequest request = builder.build();
+
+        return resilience.execute(HttpTransport.hostOf(endpoint),
+            () -> HttpTransport.sendAsync(request, maxBodyBytes(count)).thenApply(response -> mapResponse(endpoint, response, count)),
+            Collections.nCopies(count, false));
+    }
+
+    private static int maxBodyBytes(int count) {
+        return (int) Math.min((long) HttpTransport.getMaxBodyBytes() * count, Integer.MAX_VALUE - 8);
+    }
+
+    private static List<Boolean> mapResponse(URI endpoint, HttpResponse<String> response, int count) {
+        if (HttpAction.isRetryable(response.statusCode())) {
+            throw new UncheckedIOException(new IOException("HTTP " + response.statusCode() + " - " + response.body()));
+        }
+        if (response.statusCode() < 200 || response.statusCode() >= 300) {
+            System.err.println("Coalesced HTTP request to " + endpoint + " failed: " + response.statusCode()
+                + " - " + response.body());
+            return Collections.nCopies(count, false);
+        }
+
+        String body = response.body();
+        JsonNode results = null;
+        if (body != null && !body.isBlank()) {
+            try {
+                results = objectMapper.readTree(body);
+            } catch (Exception e) {
+                System.err.println("Coalesced HTTP request to " + endpoint + " returned an unreadable body ("
+                    + e.getMessage() + "); failing all " + count + " items");
+                return Collections.nCopies(count, false);
+            }
+        }
+        if (results == null || !results.isArray()) {
+            System.out.println("Coalesced HTTP request successful: " + response.statusCode() + " (" + count + " items)");
+            return Collections.nCopies(count, true);
+        }
+        if (results.size() != count) {
+            System.err.println("Coalesced HTTP request to " + endpoint + " returned " + results.size()
+                + " results for " + count + " items; failing all of them");
+            return Collections.nCopies(count, false);
+        }
+
+        List<Boolean> outcomes = new ArrayList<>(count);
+        for (JsonNode result : results) {
+            outcomes.add(isItemSuccess(result));
+        }
+        System.out.println("Coalesced HTTP request successful: " + response.statusCode() + " ("
+            + outcomes.stream().filter(Boolean::booleanValue).count() + " of " + count + " items accepted)");
+        return outcomes;
+    }
+
+    private static boolean isItemSuccess(JsonNode result) {
+        if (result.isBoolean()) {
+            return result.booleanValue();
+        }
+        if (result.has("status") && result.get("status").isNumber()) {
+            int status = result.get("status").intValue();
+            return status >= 200 && status < 300;
+        }
+        if (result.has("success")) {
+            return result.get("success").asBoolean();
+        }
+        if (result.has("ok")) {
+            return result.get("ok").asBoolean();
+        }
+        return true;
+    }
+}
@@ -0,0 +1,255 @@
+package com.happyheal.workflow.action;
+
+import com.happyheal.metrics.LatencyHistogram;
+import com.happyheal.metrics.MetricsRegistry;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+
+/**
+ * Shared HTTP client for workflow actions.
+ *
+ * <p>Every request gets a connect and request timeout, prefers HTTP/2 over TLS, and waits
+ * for one of the {@code happyheal.http.maxPerHost} slots of its host without holding a
+ * thread, so a slow partner cannot take more than its share of connections. Response
+ * bodies are kept up to {@code happyheal.http.maxBodyBytes}, and latencies are recorded
+ * per endpoint.</p>
+ */
+public final class HttpTransport {
+
+    private static final Duration CONNECT_TIMEOUT = Duration.ofMillis(Long.getLong("happyheal.http.connectTimeoutMs", 5000L));
+    private static final Duration REQUEST_TIMEOUT = Duration.ofMillis(Long.getLong("happyheal.http.requestTimeoutMs", 30000L));
+    private static final int MAX_PER_HOST = Math.max(1, Integer.getInteger("happyheal.http.maxPerHost", 32));
+    private static final int MAX_BODY_BYTES = Math.max(0, Integer.getInteger("happyheal.http.maxBodyBytes", 64 * 1024));
+    private static final int MAX_TRACKED_ENDPOINTS = Integer.getInteger("happyheal.http.maxTrackedEndpoints", 1000);
+    private static final String OTHER_ENDPOINTS = "(other)";
+
+    private static final HttpClient httpClient = HttpClient.newBuilder()
+        .connectTimeout(CONNECT_TIMEOUT)
+        .version(Boolean.parseBoolean(System.getProperty("happyheal.http.http2", "true"))
+            ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+        .followRedirects(HttpClient.Redirect.NORMAL)
+        .build();
+
+    private static final Map<String, HostLimiter> limiters = new ConcurrentHashMap<>();
+    private static final Map<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+
+    private HttpTransport() {}
+
+    /**
+     * Starts a request with the transport's request timeout. Plain http stays on HTTP/1.1,
+     * which saves the h2c upgrade that most partner servers do not support anyway.
+     */
+    public static HttpRequest.Builder newRequest(URI uri) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri).timeout(REQUEST_TIMEOUT);
+        if ("http".equalsIgnoreCase(uri.getScheme())) {
+            builder.version(HttpClient.Version.HTTP_1_1);
+        }
+        return builder;
+    }
+
+    /**
+     * Sends a request once its host has a free slot. No thread waits for the slot or the response.
+     */
+    public static CompletableFuture<HttpResponse<String>> sendAsync(HttpRequest request) {
+        return sendAsync(request, MAX_BODY_BYTES);
+    }
+
+    /**
+     * Sends a request like {@link #sendAsync(HttpRequest)}, keeping up to {@code maxBodyBytes}
+     * of the response body, e.g. for responses that answer many items at once.
+     */
+    public static CompletableFuture<HttpResponse<String>> sendAsync(HttpRequest request, int maxBodyBytes) {
+        HostLimiter limiter = limiters.computeIfAbsent(hostOf(request.uri()), host -> new HostLimiter());
+        LatencyHistogram latency = latencyOf(request.uri());
+        return limiter.acquire().thenCompose(ignored -> {
+            long start = System.nanoTime();
+            CompletableFuture<HttpResponse<String>> response;
+            try {
+                response = httpClient.sendAsync(request, info -> new LimitedStringSubscriber(maxBodyBytes));
+            } catch (RuntimeException e) {
+                limiter.release();
+                throw e;
+            }
+            return response.whenComplete((result, error) -> {
+                latency.record(System.nanoTime() - start);
+                limiter.release();
+            });
+        });
+    }
+
+    /**
+     * The response body limit of a single request, {@code happyheal.http.maxBodyBytes}.
+     */
+    static int getMaxBodyBytes() {
+        return MAX_BODY_BYTES;
+    }
+
+    /**
+     * Sends a request and waits for the response, at most for the host's queue and the request timeout.
+     */
+    public static HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException {
+        try {
+            return sendAsync(request).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Latencies per endpoint (scheme, host and path), sorted by endpoint.
+     */
+    public static Map<String, LatencyHistogram> getLatencyHistograms() {
+        return Collections.unmodifiableMap(new TreeMap<>(latencies));
+    }
+
+    /**
+     * Requests currently sent or waiting for a slot, per host.
+     */
+    public static Map<String, Integer> getInFlightRequests() {
+        Map<String, Integer> inFlight = new TreeMap<>();
+        limiters.forEach((host, limiter) -> inFlight.put(host, limiter.inFlight()));
+        return inFlight;
+    }
+
+    /**
+     * The scheme and authority of a URI, e.g. {@code https://api.happyheal.com}.
+     */
+    static String hostOf(URI uri) {
+        return uri.getScheme() + "://" + uri.getAuthority();
+    }
+
+    private static LatencyHistogram latencyOf(URI uri) {
+        String endpoint = hostOf(uri) + (uri.getRawPath() != null ? uri.getRawPath() : "");
+        LatencyHistogram latency = latencies.get(endpoint);
+        if (latency != null) {
+            return latency;
+        }
+        // Templated paths can produce an endpoint per instance; keep the map bounded
+        if (latencies.size() >= MAX_TRACKED_ENDPOINTS) {
+            endpoint = OTHER_ENDPOINTS;
+        }
+        return latencies.computeIfAbsent(endpoint, key -> {
+            LatencyHistogram histogram = new LatencyHistogram();
+            MetricsRegistry.register("happyheal_http_request_seconds", "HTTP action request time", histogram, "endpoint", key);
+            return histogram;
+        });
+    }
+
+    /**
+     * Hands out a fixed number of slots; callers without a slot get a future that completes
+     * when one is released.
+     */
+    private static final class HostLimiter {
+        private final ArrayDeque<CompletableFuture<Void>> waiting = new ArrayDeque<>();
+        private int available = MAX_PER_HOST;
+
+        synchronized CompletableFuture<Void> acquire() {
+            if (available > 0) {
+                available--;
+                return CompletableFuture.completedFuture(null);
+            }
+            CompletableFuture<Void> slot = new CompletableFuture<>();
+            waiting.add(slot);
+            return slot;
+        }
+
+        void release() {
+            CompletableFuture<Void> next;
+            synchronized (this) {
+                next = waiting.poll();
+                if (next == null) {
+                    available++;
+                    return;
+                }
+            }
+            // Hand the slot over outside the lock; the next request starts on this thread
+            next.complete(null);
+        }
+
+        synchronized int inFlight() {
+            return MAX_PER_HOST - available + waiting.size();
+        }
+    }
+
+    /**
+     * Collects a response body as UTF-8 text, dropping everything after the size limit.
+     */
+    private static final class LimitedStringSubscriber implements HttpResponse.BodySubscriber<String> {
+        private final CompletableFuture<String> body = new CompletableFuture<>();
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private final int limit;
+        private Flow.Subscription subscription;
+        private boolean truncated;
+
+        LimitedStringSubscriber(int limit) {
+            this.limit = limit;
+        }
+
+        @Override
+        public CompletionStage<String> getBody() {
+            return body;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            if (truncated) {
+                return;
+            }
+            for (ByteBuffer item : items) {
+                int length = Math.min(item.remaining(), limit - buffer.size());
+                byte[] bytes = new byte[length];
+                item.get(bytes);
+                buffer.write(bytes, 0, length);
+                if (item.hasRemaining()) {
+                    // Stop reading instead of buffering the rest of a large error page
+                    truncated = true;
+                    subscription.cancel();
+                    complete();
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            body.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            complete();
+        }
+
+        private void complete() {
+            String text = buffer.toString(StandardCharsets.UTF_8);
+            body.complete(truncated ? text + "... [truncated]" : text);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.happyheal.workflow.action;
+
+import com.happyheal.workflow.ActionSpec;
+import com.sun.mail.smtp.SMTPSendFailedException;
+
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.internet.AddressException;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends a templated email notification.
+ *
+ * <p>Mails are delivered by a small pool of sender threads; failed deliveries are retried
+ * per {@link Resilience} without holding a sender while waiting. With
+ * {@code happyheal.mail.smtp.host} set, each sender reuses a connected SMTP transport from a
+ * {@link MailTransportPool}; without it, mails are only logged.</p>
+ *
+ * <p>Transitions with {@code "Digest": true} in their setup (or all of them when
+ * {@code happyheal.mail.digest} is set) send one mail per recipient for many instances,
+ * see {@link MailDigester}.</p>
+ */
+public class MailAction implements TransitionAction {
+
+    private static final Resilience resilience = Resilience.forType("mail");
+    private final MailDigester digester = new MailDigester(this::sendAsync);
+    private volatile ExecutorService senders;
+    private MailTransportPool transports;
+
+    @Override
+    public String type() {
+        return "mail";
+    }
+
+    @Override
+    public ActionSpec parse(Map<String, Object> setup) {
+        boolean digest = setup != null && setup.containsKey("Digest")
+            ? ActionSpec.flag(setup, "Digest")
+            : Boolean.getBoolean("happyheal.mail.digest");
+        return new ActionSpec.Mail(ActionSpec.required(setup, "From"), ActionSpec.required(setup, "To"),
+            ActionSpec.required(setup, "Subject"), ActionSpec.template(setup, "Body"), digest,
+            ActionSpec.template(setup, "DigestSubject"), ActionSpec.template(setup, "DigestBody"));
+    }
+
+    @Override
+    public boolean supportsOutbox() {
+        return true;
+    }
+
+    @Override
+    public int maxConcurrency() {
+        return 4;
+    }
+
+    /**
+     * Hands all mails of a batch to the senders at once and waits for them.
+     */
+    @Override
+    public boolean supportsBatch() {
+        return true;
+    }
+
+    /**
+     * Digest transitions group whole bulk transitions, so customers with many instances get few digests.
+     */
+    @Override
+    public int maxBatchSize() {
+        return MailDigester.MAX_ITEMS * 10;
+    }
+
+    @Override
+    public boolean execute(ActionContext context) {
+        return sendAsync(context).join();
+    }
+
+    @Override
+    public CompletableFuture<Boolean> executeAsync(ActionContext context, Executor executor) {
+        return sendAsync(context);
+    }
+
+    @Override
+    public List<Boolean> executeBatch(List<ActionContext> contexts) {
+        if (contexts.get(0).spec(ActionSpec.Mail.class).digest()) {
+            return digester.sendAll(contexts).join();
+        }
+        List<CompletableFuture<Boolean>> mails = new ArrayList<>(contexts.size());
+        for (ActionContext context : contexts) {
+            mails.add(sendAsync(context));
+        }
+        List<Boolean> outcomes = new ArrayList<>(mails.size());
+        for (CompletableFuture<Boolean> mail : mails) {
+            outcomes.add(mail.join());
+        }
+        return outcomes;
+    }
+
+    /**
+     * Sends the digests still waiting for their window, waits for the mails being sent, then
+     * stops the senders and closes the SMTP connections. The senders start again on the next mail.
+     */
+    public static void shutdown() {
+        if (TransitionActions.get("mail") instanceof MailAction action) {
+            action.close();
+        }
+    }
+
+    private void close() {
+        digester.flushAll();
+        ExecutorService pool;
+        MailTransportPool pooled;
+        synchronized (this) {
+            pool = senders;
+            pooled = transports;
+            senders = null;
+        }
+        if (pool == null) {
+            return;
+        }
+        pool.shutdown();
+        try {
+            if (!pool.awaitTermination(Long.getLong("happyheal.transition.shutdownTimeoutMs", 10_000), TimeUnit.MILLISECONDS)) {
+                System.err.println("Mail senders still running at shutdown");
+                pool.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pool.shutdownNow();
+        }
+        if (pooled != null) {
+            pooled.close();
+        }
+    }
+
+    private CompletableFuture<Boolean> sendAsync(ActionContext context) {
+        if (context.spec(ActionSpec.Mail.class).digest()) {
+            // Waits for the digest window, sharing the mail with other instances for the recipient
+            return digester.submit(context);
+        }
+        MailDigester.Mail mail;
+        try {
+            mail = MailDigester.render(context);
+        } catch (RuntimeException e) {
+            System.err.println("Error rendering mail for instance " + context.instanceId() + ": " + e.getMessage());
+            return CompletableFuture.completedFuture(false);
+        }
+        return sendAsync(mail);
+    }
+
+    private CompletableFuture<Boolean> sendAsync(MailDigester.Mail mail) {
+        ExecutorService pool = senders();
+        String server = transports != null ? transports.getEndpoint() : "log";
+        return resilience.execute(server, () -> CompletableFuture.supplyAsync(() -> {
+            try {
+                return send(mail);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, pool), false);
+    }
+
+    private ExecutorService senders() {
+        ExecutorService pool = senders;
+        if (pool == null) {
+            synchronized (this) {
+                pool = senders;
+                if (pool == null) {
+                    // One transport per sender at most, since only senders borrow them
+                    transports = MailTransportPool.fromSystemProperties();
+                    pool = Executors.newFixedThreadPool(TransitionActions.concurrencyLimit(this), runnable -> {
+                        Thread thread = new Thread(runnable, "mail-sender");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    senders = pool;
+                }
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Delivers one mail; an exception is a transient failure and is retried.
+     */
+    private boolean send(MailDigester.Mail mail) throws Exception {
+        if (transports != null) {
+            return deliver(mail);
+        }
+
+        // Without an SMTP server the mail is only logged
+        System.out.println("EMAIL ACTION:");
+        System.out.println("From: " + mail.from());
+        System.out.println("To: " + mail.to());
+        System.out.println("Subject: " + mail.subject());
+        System.out.println("Body: " + (mail.body() != null ? mail.body() : "(no body)"));
+        System.out.println("--- EMAIL END ---");
+
+        return true;
+    }
+
+    private boolean deliver(MailDigester.Mail mail) throws MessagingException {
+        String to = mail.to();
+        MimeMessage message = transports.createMessage();
+        try {
+            message.setFrom(new InternetAddress(mail.from()));
+            message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(to));
+        } catch (AddressException e) {
+            // Sending again cannot fix an address
+            System.err.println("Invalid mail address " + mail.from() + " / " + to + ": " + e.getMessage());
+            return false;
+        }
+        message.setSubject(mail.subject(), "UTF-8");
+        message.setText(mail.body() != null ? mail.body() : "", "UTF-8");
+        if (mail.idempotencyKey() != null) {
+            message.setHeader("X-Idempotency-Key", mail.idempotencyKey());
+        }
+
+        try {
+            transports.send(message);
+        } catch (SendFailedException e) {
+            if (e instanceof SMTPSendFailedException smtp && smtp.getReturnCode() / 100 == 4) {
+                throw e; // Temporary rejection, e.g. greylisting or a rate limit; retried
+            }
+            System.err.println("Mail to " + to + " rejected: " + e.getMessage());
+            return false;
+        }
+        System.out.println("Mail sent to " + to);
+        return true;
+    }
+}
@@ -0,0 +1,228 @@
+package com.happyheal.workflow.action;
+
+import com.happyheal.metrics.MetricsRegistry;
+import com.happyheal.workflow.ActionSpec;
+import com.happyheal.workflow.MustacheTemplateEngine;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Combines the mails of one transition to the same recipient into one digest mail.
+ *
+ * <p>Mails are grouped by transition template and rendered sender and recipient. Mails
+ * submitted one at a time wait until {@code happyheal.mail.digest.maxItems} are waiting or
+ * {@code happyheal.mail.digest.windowMs} has passed since the first one; bulk transitions
+ * hand over whole lists, which are grouped and sent without waiting. A group of one is
+ * sent as the normal mail.</p>
+ *
+ * <p>Digests are rendered from {@code DigestSubject} and {@code DigestBody} with the first
+ * instance's variables plus {@code count} and {@code items}, the variables of every
+ * instance. All instances of a digest share its outcome.</p>
+ */
+final class MailDigester {
+
+    static final int MAX_ITEMS = Math.max(1, Integer.getInteger("happyheal.mail.digest.maxItems", 100));
+    private static final long WINDOW_MS = Long.getLong("happyheal.mail.digest.windowMs", 2000L);
+
+    static final String DEFAULT_SUBJECT = "{{count}} products";
+    static final String DEFAULT_BODY = """
+        Dear {{customername}},
+
+        the following products have been updated:
+        {{#items}}
+        - {{type}}, {{sn}}
+        {{/items}}
+        """;
+
+    /**
+     * A rendered mail, ready to send.
+     */
+    record Mail(String from, String to, String subject, String body, String idempotencyKey) {}
+
+    private record Key(ActionSpec.Mail spec, String from, String to) {}
+
+    private static final class Buffer {
+        final List<ActionContext> contexts = new ArrayList<>();
+        final List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+        ScheduledFuture<?> flushTask;
+    }
+
+    private final Function<Mail, CompletableFuture<Boolean>> sender;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "mail-digester");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<Key, Buffer> buffers = new HashMap<>();
+
+    private final AtomicLong mails = new AtomicLong();
+    private final AtomicLong items = new AtomicLong();
+
+    MailDigester(Function<Mail, CompletableFuture<Boolean>> sender) {
+        this.sender = sender;
+        MetricsRegistry.counter("happyheal_mail_digest_mails_total", "Mails sent by the digester, digests and single mails",
+            mails::get);
+        MetricsRegistry.counter("happyheal_mail_digest_items_total", "Instances covered by the digester's mails", items::get);
+    }
+
+    /**
+     * Renders the mail of a single instance.
+     */
+    static Mail render(ActionContext context) {
+        ActionSpec.Mail spec = context.spec(ActionSpec.Mail.class);
+        return new Mail(context.render(spec.from()), context.render(spec.to()), context.render(spec.subject()),
+            context.render(spec.body()), context.idempotencyKey());
+    }
+
+    /**
+     * Queues one instance; the future completes when its digest is sent.
+     */
+    CompletableFuture<Boolean> submit(ActionContext context) {
+        Key key = keyOf(context);
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        Buffer full = null;
+        synchronized (buffers) {
+            Buffer buffer = buffers.computeIfAbsent(key, k -> new Buffer());
+            buffer.contexts.add(context);
+            buffer.futures.add(future);
+            if (buffer.contexts.size() == 1) {
+                buffer.flushTask = timer.schedule(() -> flush(key, buffer), WINDOW_MS, TimeUnit.MILLISECONDS);
+            }
+            if (buffer.contexts.size() >= MAX_ITEMS) {
+                buffers.remove(key);
+                buffer.flushTask.cancel(false);
+                full = buffer;
+            }
+        }
+        if (full != null) {
+            send(full);
+        }
+        return future;
+    }
+
+    private void flush(Key key, Buffer buffer) {
+        synchronized (buffers) {
+            if (buffers.get(key) != buffer) {
+                return; // Already sent because it filled up
+            }
+            buffers.remove(key);
+        }
+        send(buffer);
+    }
+
+    /**
+     * Sends every waiting digest now instead of at the end of its window, e.g. at shutdown.
+     */
+    void flushAll() {
+        List<Buffer> waiting;
+        synchronized (buffers) {
+            waiting = new ArrayList<>(buffers.values());
+            buffers.clear();
+        }
+        for (Buffer buffer : waiting) {
+            buffer.flushTask.cancel(false);
+            send(buffer);
+        }
+    }
+
+    private void send(Buffer buffer) {
+        sendDigest(buffer.contexts).thenAccept(sent -> buffer.futures.forEach(future -> future.complete(sent)));
+    }
+
+    /**
+     * Sends one digest per recipient for all contexts, in digests of at most {@link #MAX_ITEMS} instances.
+     *
+     * @return One outcome per context, in the same order
+     */
+    CompletableFuture<List<Boolean>> sendAll(List<ActionContext> contexts) {
+        Map<Key, List<Integer>> indicesByKey = new LinkedHashMap<>();
+        for (int i = 0; i < contexts.size(); i++) {
+            indicesByKey.computeIfAbsent(keyOf(contexts.get(i)), key -> new ArrayList<>()).add(i);
+        }
+
+        List<Integer> order = new ArrayList<>(contexts.size());
+        List<CompletableFuture<Boolean>> digests = new ArrayList<>();
+        List<Integer> digestSizes = new ArrayList<>();
+        for (List<Integer> indices : indicesByKey.values()) {
+            for (int from = 0; from < indices.size(); from += MAX_ITEMS) {
+                List<Integer> chunk = indices.subList(from, Math.min(from + MAX_ITEMS, indices.size()));
+                List<ActionContext> digest = new ArrayList<>(chunk.size());
+                for (int index : chunk) {
+                    digest.add(contexts.get(index));
+                }
+                order.addAll(chunk);
+                digests.add(sendDigest(digest));
+                digestSizes.add(chunk.size());
+            }
+        }
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        CompletableFuture<Boolean>[] pending = digests.toArray(new CompletableFuture[0]);
+        return CompletableFuture.allOf(pending).thenApply(ignored -> {
+            List<Boolean> outcomes = new ArrayList<>(Collections.nCopies(contexts.size(), false));
+            int next = 0;
+            for (int digest = 0; digest < digests.size(); digest++) {
+                boolean sent = digests.get(digest).join();
+                for (int i = 0; i < digestSizes.get(digest); i++) {
+                    outcomes.set(order.get(next++), sent);
+                }
+            }
+            return outcomes;
+        });
+    }
+
+    private CompletableFuture<Boolean> sendDigest(List<ActionContext> contexts) {
+        mails.incrementAndGet();
+        items.addAndGet(contexts.size());
+        Mail mail;
+        try {
+            mail = contexts.size() == 1 ? render(contexts.get(0)) : renderDigest(contexts);
+        } catch (RuntimeException e) {
+            System.err.println("Error rendering mail digest: " + e.getMessage());
+            return CompletableFuture.completedFuture(false);
+        }
+        return sender.apply(mail);
+    }
+
+    private static Mail renderDigest(List<ActionContext> contexts) {
+        ActionContext first = contexts.get(0);
+        ActionSpec.Mail spec = first.spec(ActionSpec.Mail.class);
+
+        List<Map<String, Object>> itemVariables = new ArrayList<>(contexts.size());
+        StringBuilder keys = new StringBuilder();
+        for (ActionContext context : contexts) {
+            itemVariables.add(context.variables());
+            keys.append(context.idempotencyKey()).append(',');
+        }
+        Map<String, Object> variables = new HashMap<>(first.variables());
+        variables.put("count", contexts.size());
+        variables.put("items", itemVariables);
+
+        String subject = spec.digestSubject() != null ? spec.digestSubject() : DEFAULT_SUBJECT;
+        String body = spec.digestBody() != null ? spec.digestBody() : DEFAULT_BODY;
+        // The same instances form the same key, so a redelivered digest can still be recognized
+        String idempotencyKey = first.idempotencyKey() != null
+            ? UUID.nameUUIDFromBytes(keys.toString().getBytes(StandardCharsets.UTF_8)).toString() : null;
+        return new Mail(first.render(spec.from()), first.render(spec.to()),
+            MustacheTemplateEngine.processTemplate(subject, variables),
+            MustacheTemplateEngine.processTemplate(body, variables), idempotencyKey);
+    }
+
+    private static Key keyOf(ActionContext context) {
+        ActionSpec.Mail spec = context.spec(ActionSpec.Mail.class);
+        return new Key(spec, context.render(spec.from()), context.render(spec.to()));
+    }
+}
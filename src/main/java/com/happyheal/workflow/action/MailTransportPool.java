@@ -0,0 +1,162 @@
+package com.happyheal.workflow.action;
+
+import com.happyheal.metrics.MetricsRegistry;
+
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.MimeMessage;
+import java.util.Properties;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Connected SMTP transports shared by the mail senders.
+ *
+ * <p>A transport is connected and authenticated once and then sends up to
+ * {@code happyheal.mail.maxMessagesPerConnection} messages before it is replaced, so
+ * relays that limit messages per session are respected. Idle transports are closed after
+ * {@code happyheal.mail.idleTimeoutMs}; a transport that fails is closed instead of
+ * being reused.</p>
+ */
+final class MailTransportPool {
+
+    private static final class PooledTransport {
+        final Transport transport;
+        int sent;
+        long lastUsed = System.nanoTime();
+
+        PooledTransport(Transport transport) {
+            this.transport = transport;
+        }
+    }
+
+    private final Session session;
+    private final String protocol;
+    private final String host;
+    private final int port;
+    private final String user;
+    private final String password;
+    private final int maxMessagesPerConnection;
+    private final long idleTimeoutNanos;
+
+    // Most recently used first, so a quiet period lets the others time out
+    private final LinkedBlockingDeque<PooledTransport> idle = new LinkedBlockingDeque<>();
+
+    private final AtomicLong connections = new AtomicLong();
+    private final AtomicLong messages = new AtomicLong();
+
+    private MailTransportPool(String host) {
+        boolean ssl = Boolean.getBoolean("happyheal.mail.smtp.ssl");
+        String timeout = String.valueOf(Long.getLong("happyheal.mail.smtp.timeoutMs", 10_000L));
+        this.protocol = ssl ? "smtps" : "smtp";
+        this.host = host;
+        this.port = Integer.getInteger("happyheal.mail.smtp.port", ssl ? 465 : 25);
+        this.user = System.getProperty("happyheal.mail.smtp.user");
+        this.password = System.getProperty("happyheal.mail.smtp.password");
+        this.maxMessagesPerConnection = Math.max(1, Integer.getInteger("happyheal.mail.maxMessagesPerConnection", 100));
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Long.getLong("happyheal.mail.idleTimeoutMs", 30_000L));
+
+        Properties properties = new Properties();
+        String prefix = "mail." + protocol + ".";
+        properties.setProperty(prefix + "host", host);
+        properties.setProperty(prefix + "port", String.valueOf(port));
+        properties.setProperty(prefix + "connectiontimeout", timeout);
+        properties.setProperty(prefix + "timeout", timeout);
+        // No writetimeout: JavaMail starts a non-daemon thread per connection for it, and the
+        // read timeout already catches a relay that stops answering
+        properties.setProperty(prefix + "auth", String.valueOf(user != null));
+        properties.setProperty(prefix + "starttls.enable", String.valueOf(Boolean.getBoolean("happyheal.mail.smtp.starttls")));
+        // Don't wait for the server's answer to QUIT when replacing a connection
+        properties.setProperty(prefix + "quitwait", "false");
+        this.session = Session.getInstance(properties);
+
+        // With pooling, connections stay far below messages
+        MetricsRegistry.counter("happyheal_mail_connections_total", "SMTP connections opened by mail actions",
+            connections::get, "endpoint", getEndpoint());
+        MetricsRegistry.counter("happyheal_mail_messages_total", "Mails sent over SMTP", messages::get, "endpoint", getEndpoint());
+    }
+
+    /**
+     * Creates the pool from {@code happyheal.mail.smtp.*}, or returns null if no host is configured.
+     */
+    static MailTransportPool fromSystemProperties() {
+        String host = System.getProperty("happyheal.mail.smtp.host");
+        return host == null || host.isBlank() ? null : new MailTransportPool(host);
+    }
+
+    MimeMessage createMessage() {
+        return new MimeMessage(session);
+    }
+
+    /**
+     * Sends a message over a pooled connection.
+     *
+     * @throws SendFailedException if the server rejected the recipients; the connection stays usable
+     * @throws MessagingException if the connection failed; it is closed
+     */
+    void send(Message message) throws MessagingException {
+        message.saveChanges();
+        PooledTransport pooled = borrow();
+        try {
+            pooled.transport.sendMessage(message, message.getAllRecipients());
+        } catch (SendFailedException e) {
+            release(pooled);
+            throw e;
+        } catch (MessagingException | RuntimeException e) {
+            close(pooled);
+            throw e;
+        }
+        pooled.sent++;
+        messages.incrementAndGet();
+        release(pooled);
+    }
+
+    /**
+     * Closes all idle connections.
+     */
+    void close() {
+        PooledTransport pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            close(pooled);
+        }
+    }
+
+    String getEndpoint() {
+        return protocol + "://" + host + ":" + port;
+    }
+
+    private PooledTransport borrow() throws MessagingException {
+        PooledTransport pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            if (System.nanoTime() - pooled.lastUsed < idleTimeoutNanos) {
+                return pooled;
+            }
+            close(pooled);
+        }
+        Transport transport = session.getTransport(protocol);
+        transport.connect(host, port, user, password);
+        connections.incrementAndGet();
+        return new PooledTransport(transport);
+    }
+
+    private void release(PooledTransport pooled) {
+        if (pooled.sent >= maxMessagesPerConnection) {
+            close(pooled);
+            return;
+        }
+        pooled.lastUsed = System.nanoTime();
+        idle.offerFirst(pooled);
+    }
+
+    private static void close(PooledTransport pooled) {
+        try {
+            pooled.transport.close();
+        } catch (MessagingException e) {
+            // The connection is gone either way
+        }
+    }
+}
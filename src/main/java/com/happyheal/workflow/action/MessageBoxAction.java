@@ -0,0 +1,35 @@
+package com.happyheal.workflow.action;
+
+import com.happyheal.workflow.ActionSpec;
+
+import java.util.Map;
+
+/**
+ * Shows a templated notification in the application's notification panel.
+ *
+ * <p>Notifications are posted to the {@link NotificationCenter} instead of opening a modal
+ * dialog per instance, so bulk transitions neither block nor flood the FX thread.</p>
+ */
+public class MessageBoxAction implements TransitionAction {
+
+    @Override
+    public String type() {
+        return "messagebox";
+    }
+
+    @Override
+    public ActionSpec parse(Map<String, Object> setup) {
+        return new ActionSpec.MessageBox(ActionSpec.required(setup, "Content"));
+    }
+
+    @Override
+    public boolean execute(ActionContext context) {
+        // Process template
+        String message = context.render(context.spec(ActionSpec.MessageBox.class).content());
+
+        NotificationCenter.post(message);
+
+        System.out.println("Notification posted: " + message);
+        return true;
+    }
+}
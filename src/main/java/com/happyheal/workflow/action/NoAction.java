@@ -0,0 +1,48 @@
+package com.happyheal.workflow.action;
+
+import com.happyheal.workflow.ActionSpec;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Changes the state without any side effect.
+ */
+public class NoAction implements TransitionAction {
+
+    @Override
+    public String type() {
+        return "noaction";
+    }
+
+    @Override
+    public ActionSpec parse(Map<String, Object> setup) {
+        return new ActionSpec.NoAction();
+    }
+
+    @Override
+    public boolean supportsBatch() {
+        return true;
+    }
+
+    @Override
+    public int maxBatchSize() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public int maxConcurrency() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public boolean execute(ActionContext context) {
+        return true; // No action required
+    }
+
+    @Override
+    public List<Boolean> executeBatch(List<ActionContext> contexts) {
+        return Collections.nCopies(contexts.size(), true);
+    }
+}
@@ -0,0 +1,152 @@
+package com.happyheal.workflow.action;
+
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyIntegerProperty;
+import javafx.beans.property.ReadOnlyIntegerWrapper;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects workflow notifications for the non-modal notification panel.
+ *
+ * <p>Notifications can be posted from any thread. They are buffered and handed to the FX
+ * thread in one update at most every {@code happyheal.ui.notificationIntervalMs}, so a
+ * bulk transition costs a few UI updates instead of one dialog per instance. Notifications
+ * with the same text are shown once with a count. The newest
+ * {@code happyheal.ui.maxNotifications} are kept.</p>
+ */
+public final class NotificationCenter {
+
+    private static final long INTERVAL_MS = Math.max(1, Long.getLong("happyheal.ui.notificationIntervalMs", 200L));
+    private static final int MAX_NOTIFICATIONS = Math.max(1, Integer.getInteger("happyheal.ui.maxNotifications", 1000));
+
+    /**
+     * One line of the panel.
+     *
+     * @param message The notification text
+     * @param count How often it was posted
+     * @param lastPosted When it was posted last
+     */
+    public record Notification(String message, int count, Instant lastPosted) {}
+
+    private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "notification-center");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Posted since the last update, guarded by lock
+    private static Map<String, Notification> pending = new LinkedHashMap<>();
+    private static boolean updateScheduled;
+    private static long lastUpdate;
+    private static final Object lock = new Object();
+
+    // Newest first; only touched on the FX thread
+    private static final ObservableList<Notification> notifications = FXCollections.observableArrayList();
+    private static final ObservableList<Notification> readOnlyNotifications = FXCollections.unmodifiableObservableList(notifications);
+    private static final ReadOnlyIntegerWrapper unread = new ReadOnlyIntegerWrapper();
+
+    private NotificationCenter() {}
+
+    /**
+     * Queues a notification for the next update of the panel.
+     */
+    public static void post(String message) {
+        synchronized (lock) {
+            Notification previous = pending.remove(message);
+            pending.put(message, new Notification(message, previous != null ? previous.count() + 1 : 1, Instant.now()));
+            if (updateScheduled) {
+                return;
+            }
+            updateScheduled = true;
+            long delay = Math.max(0, lastUpdate + INTERVAL_MS - System.currentTimeMillis());
+            timer.schedule(NotificationCenter::scheduleUpdate, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * The notifications shown in the panel, newest first. Only read it on the FX thread.
+     */
+    public static ObservableList<Notification> getNotifications() {
+        return readOnlyNotifications;
+    }
+
+    /**
+     * Number of notifications posted since the panel was last read.
+     */
+    public static ReadOnlyIntegerProperty unreadProperty() {
+        return unread.getReadOnlyProperty();
+    }
+
+    /**
+     * Resets the unread count; call on the FX thread.
+     */
+    public static void markAllRead() {
+        unread.set(0);
+    }
+
+    /**
+     * Removes all notifications; call on the FX thread.
+     */
+    public static void clear() {
+        notifications.clear();
+        unread.set(0);
+    }
+
+    private static void scheduleUpdate() {
+        try {
+            Platform.runLater(NotificationCenter::update);
+        } catch (IllegalStateException e) {
+            // No FX toolkit, e.g. when running headless; the notifications were logged already
+            synchronized (lock) {
+                pending = new LinkedHashMap<>();
+                updateScheduled = false;
+            }
+        }
+    }
+
+    /**
+     * Merges everything posted since the last update into the list with a single change.
+     */
+    private static void update() {
+        Map<String, Notification> posted;
+        synchronized (lock) {
+            posted = pending;
+            pending = new LinkedHashMap<>();
+            updateScheduled = false;
+            lastUpdate = System.currentTimeMillis();
+        }
+
+        // Newest posts first, then the earlier list; repeated messages keep their new position
+        Map<String, Notification> merged = new LinkedHashMap<>();
+        List<Notification> newest = new ArrayList<>(posted.values());
+        int postedCount = 0;
+        for (int i = newest.size() - 1; i >= 0; i--) {
+            Notification notification = newest.get(i);
+            postedCount += notification.count();
+            if (merged.size() < MAX_NOTIFICATIONS) {
+                merged.put(notification.message(), notification);
+            }
+        }
+        for (Notification shown : notifications) {
+            Notification repeated = merged.get(shown.message());
+            if (repeated != null) {
+                merged.put(shown.message(), new Notification(shown.message(), shown.count() + repeated.count(),
+                    repeated.lastPosted()));
+            } else if (merged.size() < MAX_NOTIFICATIONS) {
+                merged.put(shown.message(), shown);
+            }
+        }
+        notifications.setAll(merged.values());
+        unread.set(unread.get() + postedCount);
+    }
+}
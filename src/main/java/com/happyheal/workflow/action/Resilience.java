@@ -0,0 +1,186 @@
+package com.happyheal.workflow.action;
+
+import com.happyheal.metrics.MetricsRegistry;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Retries, retry budget and circuit breakers for the calls of one action type.
+ *
+ * <p>A call that completes exceptionally failed transiently (connection error, timeout,
+ * 5xx) and is retried with {@link RetryPolicy backoff}, as long as the type's
+ * {@link RetryBudget} allows it. A call that completes normally is final, even when its
+ * result is a failure the partner reported. Retries are scheduled on a timer, so no
+ * thread waits for them. Each endpoint has a {@link CircuitBreaker}; while it is open,
+ * calls fail immediately.</p>
+ *
+ * <p>Settings per type: {@code happyheal.action.<type>.retry.*} (see {@link RetryPolicy}),
+ * {@code .retry.budgetRatio} (0.2) and {@code .retry.budgetCapacity} (20),
+ * {@code .breaker.failureThreshold} (5) and {@code .breaker.openMs} (30000).</p>
+ */
+public final class Resilience {
+
+    private static final Map<String, Resilience> byType = new ConcurrentHashMap<>();
+
+    /**
+     * Counters of one action type since startup.
+     *
+     * @param calls Calls made by actions
+     * @param retries Attempts after the first one
+     * @param retriesDenied Retries skipped because the budget was used up
+     * @param shortCircuited Attempts skipped because the endpoint's breaker was open
+     * @param exhausted Calls that failed after their last allowed attempt
+     */
+    public record Stats(long calls, long retries, long retriesDenied, long shortCircuited, long exhausted) {}
+
+    private final String type;
+    private final RetryPolicy policy;
+    private final RetryBudget budget;
+    private final int failureThreshold;
+    private final long openMillis;
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder retriesDenied = new LongAdder();
+    private final LongAdder shortCircuited = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+
+    private Resilience(String type) {
+        String prefix = "happyheal.action." + type + ".";
+        this.type = type;
+        this.policy = RetryPolicy.forType(type);
+        this.budget = new RetryBudget(
+            Double.parseDouble(System.getProperty(prefix + "retry.budgetRatio", "0.2")),
+            Double.parseDouble(System.getProperty(prefix + "retry.budgetCapacity", "20")));
+        this.failureThreshold = Integer.getInteger(prefix + "breaker.failureThreshold", 5);
+        this.openMillis = Long.getLong(prefix + "breaker.openMs", 30_000L);
+
+        MetricsRegistry.counter("happyheal_action_calls_total", "Calls made by actions", calls::sum, "type", type);
+        MetricsRegistry.counter("happyheal_action_retries_total", "Retried action calls", retries::sum, "type", type);
+        MetricsRegistry.counter("happyheal_action_retries_denied_total", "Retries skipped because the retry budget was used up",
+            retriesDenied::sum, "type", type);
+        MetricsRegistry.gauge("happyheal_action_retry_budget", "Saved retries left in the retry budget",
+            budget::getBalance, "type", type);
+        MetricsRegistry.counter("happyheal_action_short_circuited_total", "Action calls failed by an open circuit breaker",
+            shortCircuited::sum, "type", type);
+        MetricsRegistry.counter("happyheal_action_exhausted_total", "Action calls that failed after all attempts",
+            exhausted::sum, "type", type);
+    }
+
+    /**
+     * Returns the shared instance for an action type.
+     */
+    public static Resilience forType(String type) {
+        return byType.computeIfAbsent(type, Resilience::new);
+    }
+
+    /**
+     * All action types that made calls, sorted by type.
+     */
+    public static Map<String, Resilience> all() {
+        return Collections.unmodifiableMap(new TreeMap<>(byType));
+    }
+
+    /**
+     * Makes a call, retrying it while it fails transiently.
+     *
+     * @param endpoint Key of the circuit breaker, e.g. the partner host
+     * @param attempt Starts one attempt
+     * @param failed Result when all attempts fail or the breaker is open
+     */
+    public <T> CompletableFuture<T> execute(String endpoint, Supplier<CompletableFuture<T>> attempt, T failed) {
+        calls.increment();
+        budget.onCall();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        CircuitBreaker breaker = breakers.computeIfAbsent(endpoint, this::newBreaker);
+        attempt(endpoint, breaker, attempt, failed, 1, result);
+        return result;
+    }
+
+    private CircuitBreaker newBreaker(String endpoint) {
+        CircuitBreaker breaker = new CircuitBreaker(type + " " + endpoint, failureThreshold, openMillis);
+        MetricsRegistry.gauge("happyheal_circuit_breaker_state", "Circuit breaker state: 0 closed, 1 open, 2 half-open",
+            () -> breaker.getState().ordinal(), "type", type, "endpoint", endpoint);
+        MetricsRegistry.gauge("happyheal_circuit_breaker_failures", "Failures in a row since the last success",
+            breaker::getFailures, "type", type, "endpoint", endpoint);
+        return breaker;
+    }
+
+    private <T> void attempt(String endpoint, CircuitBreaker breaker, Supplier<CompletableFuture<T>> attempt,
+                             T failed, int number, CompletableFuture<T> result) {
+        if (!breaker.tryAcquire()) {
+            shortCircuited.increment();
+            System.err.println("Circuit open for " + type + " " + endpoint + ", failing fast");
+            result.complete(failed);
+            return;
+        }
+
+        CompletableFuture<T> future;
+        try {
+            future = attempt.get();
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        future.whenComplete((value, error) -> {
+            if (error == null) {
+                breaker.onSuccess();
+                result.complete(value);
+                return;
+            }
+
+            breaker.onFailure();
+            String message = unwrap(error).getMessage();
+            if (number >= policy.maxAttempts()) {
+                exhausted.increment();
+                System.err.println(type + " call to " + endpoint + " failed after " + number + " attempts: " + message);
+                result.complete(failed);
+            } else if (!budget.tryRetry()) {
+                retriesDenied.increment();
+                exhausted.increment();
+                System.err.println(type + " call to " + endpoint + " failed, retry budget used up: " + message);
+                result.complete(failed);
+            } else {
+                retries.increment();
+                long delay = policy.delayMillis(number);
+                System.err.println(type + " call to " + endpoint + " failed (" + message + "), retrying in " + delay + " ms");
+                CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS)
+                    .execute(() -> attempt(endpoint, breaker, attempt, failed, number + 1, result));
+            }
+        });
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException) && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+
+    public Stats getStats() {
+        return new Stats(calls.sum(), retries.sum(), retriesDenied.sum(), shortCircuited.sum(), exhausted.sum());
+    }
+
+    /**
+     * Saved retries left in the budget.
+     */
+    public double getRetryBudget() {
+        return budget.getBalance();
+    }
+
+    /**
+     * The circuit breakers by endpoint, sorted by endpoint.
+     */
+    public Map<String, CircuitBreaker> getCircuitBreakers() {
+        return Collections.unmodifiableMap(new TreeMap<>(breakers));
+    }
+}
@@ -0,0 +1,39 @@
+package com.happyheal.workflow.action;
+
+/**
+ * Limits retries to a share of the calls, so that an outage does not multiply the load
+ * on the partner. Every call earns {@code ratio} of a retry, up to {@code capacity} saved retries.
+ */
+final class RetryBudget {
+
+    private final double ratio;
+    private final double capacity;
+    private double balance;
+
+    RetryBudget(double ratio, double capacity) {
+        this.ratio = ratio;
+        this.capacity = capacity;
+        this.balance = capacity;
+    }
+
+    synchronized void onCall() {
+        balance = Math.min(capacity, balance + ratio);
+    }
+
+    /**
+     * Takes one retry from the budget.
+     *
+     * @return false if the budget is used up
+     */
+    synchronized boolean tryRetry() {
+        if (balance < 1) {
+            return false;
+        }
+        balance -= 1;
+        return true;
+    }
+
+    synchronized double getBalance() {
+        return balance;
+    }
+}
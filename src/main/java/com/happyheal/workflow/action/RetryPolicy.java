@@ -0,0 +1,33 @@
+package com.happyheal.workflow.action;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential backoff with jitter for retrying failed actions.
+ *
+ * @param maxAttempts Attempts including the first one
+ * @param baseDelayMs Delay before the first retry, doubled for every further retry
+ * @param maxDelayMs Upper bound of a single delay
+ */
+record RetryPolicy(int maxAttempts, long baseDelayMs, long maxDelayMs) {
+
+    /**
+     * Reads {@code happyheal.action.<type>.retry.maxAttempts}, {@code .baseDelayMs} and {@code .maxDelayMs}.
+     */
+    static RetryPolicy forType(String type) {
+        String prefix = "happyheal.action." + type + ".retry.";
+        return new RetryPolicy(Math.max(1, Integer.getInteger(prefix + "maxAttempts", 3)),
+            Math.max(1, Long.getLong(prefix + "baseDelayMs", 200L)),
+            Math.max(1, Long.getLong(prefix + "maxDelayMs", 5000L)));
+    }
+
+    /**
+     * Delay before the given retry (1 for the first). Half of the exponential delay is fixed
+     * and half is random, so clients that failed together do not retry together.
+     */
+    long delayMillis(int retry) {
+        long exponential = baseDelayMs << Math.min(retry - 1, 30);
+        long delay = exponential > 0 ? Math.min(maxDelayMs, exponential) : maxDelayMs;
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+}
@@ -0,0 +1,102 @@
+package com.happyheal.workflow.action;
+
+import com.happyheal.workflow.ActionSpec;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Service interface for transition action types such as "http" or "mail".
+ *
+ * <p>Implementations are discovered with {@link java.util.ServiceLoader}; list them in
+ * {@code META-INF/services/com.happyheal.workflow.action.TransitionAction}. An action parses
+ * its setup once when the workflow graph is compiled and is then executed for one or many
+ * instances. Actions that are cheaper per call than per instance declare
+ * {@link #supportsBatch()}, and every action declares how many calls may run at once.</p>
+ */
+public interface TransitionAction {
+
+    /**
+     * The transition type handled by this action, in lower case.
+     */
+    String type();
+
+    /**
+     * Parses and validates the Setup of a transition of this type.
+     *
+     * @throws IllegalArgumentException if the setup is incomplete or invalid
+     */
+    ActionSpec parse(Map<String, Object> setup);
+
+    /**
+     * Executes the action for a single instance.
+     *
+     * @return true if the action succeeded and the instance may change state
+     */
+    boolean execute(ActionContext context) throws Exception;
+
+    /**
+     * Whether {@link #executeBatch} handles several instances more cheaply than
+     * calling {@link #execute} for each of them.
+     */
+    default boolean supportsBatch() {
+        return false;
+    }
+
+    /**
+     * Whether transitions with this spec are executed in batches. Defaults to
+     * {@link #supportsBatch()}; actions where batching is a per-transition option override this.
+     */
+    default boolean supportsBatch(ActionSpec spec) {
+        return supportsBatch();
+    }
+
+    /**
+     * Whether the action's effect may be delivered after the state change is stored, from the
+     * transition outbox. True for effects on other systems; actions that need the user, like
+     * a message box, keep running before the state change.
+     */
+    default boolean supportsOutbox() {
+        return false;
+    }
+
+    /**
+     * The largest number of instances passed to one {@link #executeBatch} call.
+     */
+    default int maxBatchSize() {
+        return 500;
+    }
+
+    /**
+     * Executes the action for several instances of the same transition.
+     *
+     * @return One outcome per context, in the same order
+     */
+    default List<Boolean> executeBatch(List<ActionContext> contexts) throws Exception {
+        List<Boolean> outcomes = new ArrayList<>(contexts.size());
+        for (ActionContext context : contexts) {
+            outcomes.add(execute(context));
+        }
+        return outcomes;
+    }
+
+    /**
+     * How many {@link #execute} or {@link #executeBatch} calls of this action may run at once.
+     * Can be overridden with {@code happyheal.action.<type>.maxConcurrency}.
+     */
+    default int maxConcurrency() {
+        return 1;
+    }
+
+    /**
+     * Executes the action without blocking the caller. The default runs {@link #execute}
+     * on the given executor within the action's concurrency limit; actions with
+     * non-blocking I/O override this.
+     */
+    default CompletableFuture<Boolean> executeAsync(ActionContext context, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> ActionDispatcher.executeGuarded(this, context), executor);
+    }
+}
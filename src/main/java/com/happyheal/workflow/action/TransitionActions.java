@@ -0,0 +1,72 @@
+package com.happyheal.workflow.action;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Registry of the {@link TransitionAction}s found on the classpath, keyed by type.
+ */
+public final class TransitionActions {
+
+    private static final Map<String, TransitionAction> actions = load();
+    private static final Map<String, Semaphore> permits = new ConcurrentHashMap<>();
+
+    private TransitionActions() {}
+
+    private static Map<String, TransitionAction> load() {
+        Map<String, TransitionAction> loaded = new LinkedHashMap<>();
+        Iterator<TransitionAction> providers = ServiceLoader.load(TransitionAction.class).iterator();
+        while (true) {
+            TransitionAction action;
+            try {
+                if (!providers.hasNext()) {
+                    break;
+                }
+                action = providers.next();
+            } catch (ServiceConfigurationError e) {
+                System.err.println("Failed to load transition action: " + e.getMessage());
+                continue;
+            }
+            String type = action.type().toLowerCase();
+            TransitionAction existing = loaded.putIfAbsent(type, action);
+            if (existing != null) {
+                System.err.println("Ignoring " + action.getClass().getName() + ": transition type " + type
+                    + " is already handled by " + existing.getClass().getName());
+            }
+        }
+        return Collections.unmodifiableMap(loaded);
+    }
+
+    /**
+     * Returns the action for a transition type, or null if none is registered.
+     */
+    public static TransitionAction get(String type) {
+        return type != null ? actions.get(type.toLowerCase()) : null;
+    }
+
+    public static Collection<TransitionAction> all() {
+        return actions.values();
+    }
+
+    /**
+     * Returns the effective concurrency limit of an action, honouring
+     * {@code happyheal.action.<type>.maxConcurrency}.
+     */
+    public static int concurrencyLimit(TransitionAction action) {
+        return Math.max(1, Integer.getInteger("happyheal.action." + action.type() + ".maxConcurrency", action.maxConcurrency()));
+    }
+
+    /**
+     * Permits shared by all executions of an action type, sized by its concurrency limit.
+     */
+    static Semaphore permits(TransitionAction action) {
+        return permits.computeIfAbsent(action.type(), type -> new Semaphore(concurrencyLimit(action), true));
+    }
+}